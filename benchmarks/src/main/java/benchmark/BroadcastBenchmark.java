@@ -0,0 +1,86 @@
+package benchmark;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.openjdk.jmh.annotations.*;
+import server.websocket.ConnectionManager;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.Notification;
+import websocket.messages.ServerMessage;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out of notifications and game updates to every session in a game.
+ * Sessions are stand-ins whose sends only count the characters written, so
+ * this measures ConnectionManager and serialization rather than the network.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+    private static final int GAME_ID = 1;
+
+    @Param({"2", "16", "128"})
+    public int sessions;
+
+    private ConnectionManager connectionManager;
+    private Notification notification;
+    private LoadGameMessage loadGameMessage;
+    // Characters handed to the sessions, kept so sends cannot be optimized away
+    private long charactersSent;
+
+    @Setup(Level.Trial)
+    public void connectSessions() {
+        connectionManager = new ConnectionManager();
+        for (int i = 0; i < sessions; i++) {
+            connectionManager.add(GAME_ID, "token" + i, session());
+        }
+        notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, "white moved e2 to e4");
+        loadGameMessage = new LoadGameMessage(ServerMessage.ServerMessageType.LOAD_GAME,
+                Positions.game(Positions.MIDDLEGAME));
+    }
+
+    @Benchmark
+    public long broadcastNotification() throws IOException {
+        connectionManager.broadcast(GAME_ID, "token0", notification);
+        return charactersSent;
+    }
+
+    @Benchmark
+    public long sendLoadGame() throws IOException {
+        connectionManager.sendLoadCommand(GAME_ID, loadGameMessage);
+        return charactersSent;
+    }
+
+    // The jetty interfaces are large and only isOpen and sendString are used, so answer just those.
+    // Writes complete at once, so the outbound queues never fill.
+    private Session session() {
+        RemoteEndpoint remote = (RemoteEndpoint) Proxy.newProxyInstance(
+                RemoteEndpoint.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("sendString")) {
+                        charactersSent += ((String) args[0]).length();
+                        if (args.length > 1) {
+                            ((WriteCallback) args[1]).writeSuccess();
+                        }
+                    }
+                    return null;
+                });
+        return (Session) Proxy.newProxyInstance(
+                Session.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "isOpen" -> true;
+                    case "getRemote" -> remote;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+}
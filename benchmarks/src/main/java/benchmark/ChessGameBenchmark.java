@@ -0,0 +1,89 @@
+package benchmark;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move generation and game rule checks through the public ChessGame API,
+ * the calls the server makes for every move it receives
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessGameBenchmark {
+    @Param({Positions.OPENING, Positions.MIDDLEGAME, Positions.ENDGAME})
+    public String position;
+
+    private ChessGame game;
+    private List<ChessPosition> ownPieces;
+    private ChessMove firstMove;
+
+    @Setup(Level.Trial)
+    public void loadPosition() {
+        game = Positions.game(position);
+        ownPieces = new ArrayList<>();
+        for (int row = 1; row <= 8; row++) {
+            for (int col = 1; col <= 8; col++) {
+                ChessPosition square = new ChessPosition(row, col);
+                ChessPiece piece = game.getBoard().getPiece(square);
+                if (piece != null && piece.getTeamColor() == game.getTeamTurn()) {
+                    ownPieces.add(square);
+                }
+            }
+        }
+        firstMove = game.legalMoves().iterator().next();
+    }
+
+    @Benchmark
+    public void validMovesForEveryPiece(Blackhole blackhole) {
+        for (ChessPosition square : ownPieces) {
+            blackhole.consume(game.validMoves(square));
+        }
+    }
+
+    /**
+     * The cost of the copy the benchmarks below start from, to subtract from their times
+     */
+    @Benchmark
+    public ChessGame copyGame() {
+        return new ChessGame(game);
+    }
+
+    // The benchmarks below change the game or fill its move cache, so each works on its own copy
+
+    @Benchmark
+    public Map<ChessPosition, Collection<ChessMove>> allLegalMoves() {
+        return new ChessGame(game).allLegalMoves();
+    }
+
+    @Benchmark
+    public ChessGame makeMove() throws InvalidMoveException {
+        ChessGame copy = new ChessGame(game);
+        copy.makeMove(firstMove);
+        return copy;
+    }
+
+    @Benchmark
+    public boolean isInCheckmate() {
+        return game.isInCheckmate(game.getTeamTurn());
+    }
+
+    @Benchmark
+    public ChessGame.Status statusAfterLoad() {
+        return new ChessGame(game).status();
+    }
+}
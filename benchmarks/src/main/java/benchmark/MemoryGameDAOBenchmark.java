@@ -0,0 +1,71 @@
+package benchmark;
+
+import chess.ChessGame;
+import dataaccess.memory.MemoryGameDAO;
+import model.AuthData;
+import model.GameData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Game storage operations against the in-memory DAO with a given number of
+ * games already stored
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryGameDAOBenchmark {
+    @Param({"10", "1000"})
+    public int games;
+
+    private MemoryGameDAO gameDAO;
+    private ChessGame game;
+    private AuthData auth;
+    private int nextGame;
+
+    @Setup(Level.Iteration)
+    public void fillGames() {
+        gameDAO = new MemoryGameDAO();
+        game = new ChessGame();
+        auth = new AuthData("token", "player");
+        for (int i = 0; i < games; i++) {
+            gameDAO.createGame(new GameData(0, null, null, "game" + i, game));
+        }
+        nextGame = 0;
+    }
+
+    @Benchmark
+    public GameData getGame() {
+        nextGame = nextGame % games + 1;
+        return gameDAO.getGame(nextGame);
+    }
+
+    @Benchmark
+    public List<GameData> listGames() {
+        return gameDAO.listGames();
+    }
+
+    @Benchmark
+    public GameData joinGame() {
+        nextGame = nextGame % games + 1;
+        gameDAO.joinGame(nextGame, "WHITE", auth);
+        return gameDAO.getGame(nextGame);
+    }
+
+    @Benchmark
+    public void makeMove() {
+        nextGame = nextGame % games + 1;
+        gameDAO.makeMove(nextGame, game);
+    }
+
+    // Each call adds a game, so the store grows over an iteration and is rebuilt before the next
+    @Benchmark
+    public GameData createGame() {
+        return gameDAO.createGame(new GameData(0, null, null, "created", game));
+    }
+}
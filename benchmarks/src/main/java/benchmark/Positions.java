@@ -0,0 +1,30 @@
+package benchmark;
+
+import chess.ChessGame;
+import chess.perft.PerftPosition;
+
+/**
+ * The game phases the chess benchmarks are parameterized over, each backed by
+ * one of the perft reference positions
+ */
+public final class Positions {
+    public static final String OPENING = "opening";
+    public static final String MIDDLEGAME = "middlegame";
+    public static final String ENDGAME = "endgame";
+
+    private Positions() {
+    }
+
+    /**
+     * @return a fresh game at the named phase's position
+     */
+    public static ChessGame game(String phase) {
+        String reference = switch (phase) {
+            case OPENING -> "startpos";
+            case MIDDLEGAME -> "kiwipete";
+            case ENDGAME -> "position3";
+            default -> throw new IllegalArgumentException("Unknown position: " + phase);
+        };
+        return PerftPosition.named(reference).game();
+    }
+}
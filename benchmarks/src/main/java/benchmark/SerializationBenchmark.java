@@ -0,0 +1,75 @@
+package benchmark;
+
+import com.google.gson.Gson;
+import model.GameData;
+import org.openjdk.jmh.annotations.*;
+import websocket.messages.LoadGameMessage;
+import websocket.messages.ServerMessage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gson round-trips of the objects the server stores and sends: GameData is
+ * written to the database on every move and a LoadGameMessage goes to every
+ * player and observer of a game
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({Positions.OPENING, Positions.MIDDLEGAME, Positions.ENDGAME})
+    public String position;
+
+    private final Gson gson = new Gson();
+    private GameData gameData;
+    private LoadGameMessage loadGameMessage;
+    private String gameDataJson;
+    private String loadGameMessageJson;
+
+    @Setup(Level.Trial)
+    public void createMessages() {
+        gameData = new GameData(1, "white", "black", "benchmark", Positions.game(position));
+        loadGameMessage = new LoadGameMessage(ServerMessage.ServerMessageType.LOAD_GAME, gameData.game());
+        gameDataJson = gson.toJson(gameData);
+        loadGameMessageJson = gson.toJson(loadGameMessage);
+    }
+
+    @Benchmark
+    public GameData gameDataRoundTrip() {
+        return gson.fromJson(gson.toJson(gameData), GameData.class);
+    }
+
+    @Benchmark
+    public String gameDataToJson() {
+        return gson.toJson(gameData);
+    }
+
+    @Benchmark
+    public GameData gameDataFromJson() {
+        return gson.fromJson(gameDataJson, GameData.class);
+    }
+
+    @Benchmark
+    public LoadGameMessage loadGameMessageRoundTrip() {
+        return gson.fromJson(gson.toJson(loadGameMessage), LoadGameMessage.class);
+    }
+
+    @Benchmark
+    public String loadGameMessageToJson() {
+        return gson.toJson(loadGameMessage, LoadGameMessage.class);
+    }
+
+    @Benchmark
+    public LoadGameMessage loadGameMessageFromJson() {
+        return gson.fromJson(loadGameMessageJson, LoadGameMessage.class);
+    }
+
+    // What ConnectionManager pays per recipient today, building a new Gson for every send
+    @Benchmark
+    public String loadGameMessageToJsonWithNewGson() {
+        return new Gson().toJson(loadGameMessage, LoadGameMessage.class);
+    }
+}
@@ -191,10 +191,10 @@ public class Client {
                 StringBuilder result = new StringBuilder("\nGAMES LIST:\n");
                 AuthData info = new AuthData(auth, authData.username());
                 ListGamesResult res = server.listGames(info);
-                Collection<GameData> gamesList = res.getGames();
+                Collection<GameView> gamesList = res.getGames();
                 //System.out.println("Games List: " + gamesList);
                 //System.out.println("Number of games in the list: " + gamesList.size()); // Debugging
-                for (GameData game : gamesList) {
+                for (GameView game : gamesList) {
                     String joinCode = getJoinCodeFromGameID(game.gameID());
                     if (joinCode != null && !joinCode.isEmpty()) {
                         result.append("Game Name: ").append(game.gameName()).append("\n");
@@ -3,6 +3,7 @@ package server;
 import com.google.gson.Gson;
 import model.AuthData;
 import model.GameData;
+import model.GameView;
 import model.UserData;
 import request.*;
 import result.*;
@@ -33,19 +34,35 @@ public class Server {
         } catch (DataAccessException e) {
             throw new RuntimeException(e);
         }
-        clearService = new ClearService(authDAO, gameDAO, userDAO);
         gameService = new GameService(authDAO, gameDAO);
+        clearService = new ClearService(authDAO, gameDAO, userDAO, gameService);
         userService = new UserService(authDAO, userDAO);
-        webSocketHandler = new WebSocketHandler();
+        webSocketHandler = new WebSocketHandler(configuredConnections(), gameService);
     }
 
     //Constructor for SQL Server
     public Server(SqlDataAccess sql) throws DataAccessException {
+        this(sql, configuredConnections());
+    }
+
+    //Constructor for SQL Server with its own slow-consumer settings
+    public Server(SqlDataAccess sql, ConnectionManager connections) throws DataAccessException {
         //SqlDataAccess sql = new SqlDataAccess();
-        this.clearService = new ClearService(sql, sql, sql);
         this.gameService = new GameService(sql, sql);
+        this.clearService = new ClearService(sql, sql, sql, gameService);
         this.userService = new UserService(sql, sql);
-        this.webSocketHandler = new WebSocketHandler();
+        this.webSocketHandler = new WebSocketHandler(connections, gameService);
+    }
+
+    /**
+     * Reads the slow-consumer settings from the chess.slowConsumerPolicy and
+     * chess.highWaterMark system properties, e.g. -Dchess.slowConsumerPolicy=DISCONNECT
+     */
+    private static ConnectionManager configuredConnections() {
+        var policy = SlowConsumerPolicy.valueOf(System.getProperty("chess.slowConsumerPolicy",
+                SlowConsumerPolicy.DROP_STALE_STATES.name()));
+        int highWaterMark = Integer.getInteger("chess.highWaterMark", ConnectionManager.DEFAULT_HIGH_WATER_MARK);
+        return new ConnectionManager(policy, highWaterMark);
     }
 
     public int run(int desiredPort) {
@@ -63,6 +80,7 @@ public class Server {
         Spark.get("/game", this::list);
         Spark.post("/game", this::create);
         Spark.put("/game", this::join);
+        Spark.get("/status", this::status);
 
         Spark.awaitInitialization();
         return Spark.port();
@@ -71,6 +89,8 @@ public class Server {
     public void stop() {
         Spark.stop();
         Spark.awaitStop();
+        // Games in memory may have moves the database has not seen yet
+        gameService.shutdown();
     }
 
     private Object clear(Request req, Response res) {
@@ -141,8 +161,7 @@ public class Server {
         //ListGamesRequest request = new ListGamesRequest();
         ListGamesResult response;
         try {
-            Collection<GameData> games = GameService.listGames(authToken);
-            GameService.listGames(authToken);
+            Collection<GameView> games = gameService.listGames(authToken);
             response = new ListGamesResult("", games);
             res.status(200);
         } catch (DataAccessException e) {
@@ -194,4 +213,11 @@ public class Server {
         res.type("application/json");
         return gson.toJson(response);
     }
+
+    private Object status(Request req, Response res) {
+        Gson gson = new Gson();
+        res.status(200);
+        res.type("application/json");
+        return gson.toJson(webSocketHandler.status());
+    }
 }
@@ -1,19 +1,154 @@
 package server.websocket;
 
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 
-import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
 
-public class Connection {
+/**
+ * One client's session in a game, with its own queue of messages waiting to
+ * be written.
+ * <p>
+ * Sends never block: a message is queued and written asynchronously, and
+ * the next one goes out when the previous write completes. A slow client
+ * therefore only delays its own messages, not the broadcast to everyone
+ * else in the game. The queue is bounded by a high-water mark, and the
+ * {@link SlowConsumerPolicy} decides what happens as it fills.
+ * <p>
+ * Once a connection gives up on its client, whether the client fell too far
+ * behind or a write failed, it closes the session and reports itself through
+ * the {@code onClose} callback so its owner can stop sending to it.
+ */
+public class Connection implements WriteCallback {
+    public final int gameID;
     public String authToken;
     public Session session;
 
-    public Connection(String authToken, Session session) {
+    private final SlowConsumerPolicy policy;
+    private final int highWaterMark;
+    private final Consumer<Connection> onClose;
+
+    // Messages not yet handed to jetty, guarded by this
+    private final ArrayDeque<Outbound> queue = new ArrayDeque<>();
+    // Whether a write is in flight, guarded by this
+    private boolean writing;
+    private boolean closed;
+
+    public Connection(int gameID, String authToken, Session session) {
+        this(gameID, authToken, session, SlowConsumerPolicy.DROP_STALE_STATES, ConnectionManager.DEFAULT_HIGH_WATER_MARK);
+    }
+
+    public Connection(int gameID, String authToken, Session session, SlowConsumerPolicy policy, int highWaterMark) {
+        this(gameID, authToken, session, policy, highWaterMark, c -> { });
+    }
+
+    public Connection(int gameID, String authToken, Session session, SlowConsumerPolicy policy, int highWaterMark,
+                      Consumer<Connection> onClose) {
+        this.gameID = gameID;
         this.authToken = authToken;
         this.session = session;
+        this.policy = policy;
+        this.highWaterMark = highWaterMark;
+        this.onClose = onClose;
+    }
+
+    public void send(String msg) {
+        send(msg, false);
+    }
+
+    /**
+     * Queues a message and returns without waiting for it to be written
+     *
+     * @param gameState whether the message is a LOAD_GAME, which a later one makes stale
+     */
+    public void send(String msg, boolean gameState) {
+        Outbound next;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (gameState && policy == SlowConsumerPolicy.DROP_STALE_STATES) {
+                queue.removeIf(Outbound::gameState);
+            }
+            if (queue.size() >= highWaterMark) {
+                closed = true;
+                queue.clear();
+                next = null;
+            } else {
+                queue.add(new Outbound(msg, gameState));
+                if (writing) {
+                    return;
+                }
+                writing = true;
+                next = queue.poll();
+            }
+        }
+
+        if (next == null) {
+            System.out.println("Disconnecting slow client after " + highWaterMark + " queued messages");
+            close(StatusCode.POLICY_VIOLATION, "Too many messages waiting to be sent");
+        } else {
+            write(next);
+        }
+    }
+
+    /**
+     * @return the number of messages waiting behind the one being written
+     */
+    public synchronized int queueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public void writeSuccess() {
+        Outbound next;
+        synchronized (this) {
+            next = queue.poll();
+            if (next == null) {
+                writing = false;
+                return;
+            }
+        }
+        write(next);
+    }
+
+    @Override
+    public void writeFailed(Throwable x) {
+        boolean wasClosed;
+        synchronized (this) {
+            wasClosed = closed;
+            closed = true;
+            writing = false;
+            queue.clear();
+        }
+        System.out.println("WebSocket send failed: " + x.getMessage());
+        if (!wasClosed) {
+            close(StatusCode.SERVER_ERROR, "Failed to send a message");
+        }
+    }
+
+    // Called once, by whichever thread marked the connection closed
+    private void close(int statusCode, String reason) {
+        try {
+            if (session.isOpen()) {
+                session.close(statusCode, reason);
+            }
+        } finally {
+            onClose.accept(this);
+        }
+    }
+
+    private void write(Outbound message) {
+        try {
+            session.getRemote().sendString(message.text(), this);
+        } catch (RuntimeException e) {
+            // The session closed between queueing and writing
+            writeFailed(e);
+        }
     }
 
-    public void send(String msg) throws IOException {
-        session.getRemote().sendString(msg);
+    private record Outbound(String text, boolean gameState) {
     }
-}
\ No newline at end of file
+}
@@ -1,131 +1,194 @@
 package server.websocket;
 
 import com.google.gson.Gson;
-import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.websocket.api.Session;
 import websocket.messages.*;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
 
+/**
+ * Keeps track of which sessions are in which games and delivers messages to them.
+ * <p>
+ * Connections are indexed three ways, by game, by auth string and by
+ * session, so finding who to send to or what to remove never means
+ * scanning every game. Each index is a concurrent map. A connection is
+ * added to or removed from all three inside one compute on its session's
+ * key, so two changes for the same session never interleave and no index
+ * is left holding a connection the others have dropped; a key is dropped as
+ * soon as its last connection goes. A game's connections are a copy-on-write
+ * list, since broadcasts read it far more often than players join or leave.
+ */
 public class ConnectionManager {
-    //public final ConcurrentHashMap<String, Connection> connections = new ConcurrentHashMap<>();
-    public final ConcurrentHashMap<Integer, ArrayList<Connection>> connections = new ConcurrentHashMap<>();
+    // Gson is thread-safe, so one instance serves every broadcast
+    private static final Gson GSON = new Gson();
+    // Messages a connection may have waiting before the slow-consumer policy steps in
+    public static final int DEFAULT_HIGH_WATER_MARK = 64;
 
-    public void add(int gameID, String authToken, Session session) {
-        var connection = new Connection(authToken, session);
-        ArrayList<Connection> tmp = connections.get(gameID);
-        if (tmp == null)
-        {
-            ArrayList<Connection> tmp2 = new ArrayList<>();
-            tmp2.add(connection);
-            connections.put(gameID, tmp2);
-        }
-        else
-        {
-            tmp.add(connection);
-            connections.put(gameID, tmp);
+    private final Map<Integer, List<Connection>> byGame = new ConcurrentHashMap<>();
+    private final Map<String, Set<Connection>> byAuth = new ConcurrentHashMap<>();
+    private final Map<Session, Set<Connection>> bySession = new ConcurrentHashMap<>();
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final int highWaterMark;
+
+    public ConnectionManager() {
+        this(SlowConsumerPolicy.DROP_STALE_STATES, DEFAULT_HIGH_WATER_MARK);
+    }
+
+    public ConnectionManager(SlowConsumerPolicy slowConsumerPolicy, int highWaterMark) {
+        if (slowConsumerPolicy == null || highWaterMark < 1) {
+            throw new IllegalArgumentException("A slow-consumer policy and a high-water mark of at least 1 are required");
         }
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.highWaterMark = highWaterMark;
     }
 
-    public void removeSessionFromGame(int gameID, String authToken) {
-        ArrayList<Connection> tmp = connections.get(gameID);
-        tmp.removeIf(conn -> Objects.equals(conn.authToken, authToken));
+    public void add(int gameID, String authToken, Session session) {
+        // A connection that gives up on its client closes the session, so the session leaves every game
+        var connection = new Connection(gameID, authToken, session, slowConsumerPolicy, highWaterMark,
+                c -> removeSession(c.session));
+        bySession.compute(session, (s, set) -> {
+            Set<Connection> connections = (set == null) ? ConcurrentHashMap.newKeySet() : set;
+            connections.add(connection);
+            byGame.compute(gameID, (id, list) -> {
+                List<Connection> inGame = (list == null) ? new CopyOnWriteArrayList<>() : list;
+                inGame.add(connection);
+                return inGame;
+            });
+            byAuth.compute(authToken, (auth, byToken) -> {
+                Set<Connection> withToken = (byToken == null) ? ConcurrentHashMap.newKeySet() : byToken;
+                withToken.add(connection);
+                return withToken;
+            });
+            return connections;
+        });
     }
 
-    public void removeSession(Session session)
-    {
-        for (int key : connections.keySet())
-        {
-            ArrayList<Connection> tmp = connections.get(key);
-            tmp.removeIf(conn -> conn.session == session);
-            connections.put(key, tmp);
+    public void removeSessionFromGame(int gameID, String authToken) {
+        for (var c : byAuth.getOrDefault(authToken, Set.of())) {
+            if (c.gameID == gameID) {
+                remove(c);
+            }
         }
     }
 
-    public void broadcast(int gameID, String excludeUser, Notification notification) throws IOException {
-        var removeList = new ArrayList<Connection>();
-        for (var c : connections.get(gameID)) {
-            if (c.session.isOpen()) {
-                if (!c.authToken.equals(excludeUser)) {
-                    String msg = new Gson().toJson(notification, Notification.class);
-                    c.send(msg);
-                }
-            } else {
-                removeList.add(c);
+    public void removeSession(Session session) {
+        bySession.computeIfPresent(session, (s, connections) -> {
+            for (var c : connections) {
+                unindex(c);
             }
-        }
+            return null;
+        });
+    }
 
-        // Clean up any connections that were left open.
-        for (var c : removeList) {
-            ArrayList<Connection> tmp = connections.get(gameID);
-            tmp.remove(c);
-            connections.put(gameID, tmp);
-        }
+    public void broadcast(int gameID, String excludeUser, Notification notification) throws IOException {
+        // Encoded once and the same string written to every connection
+        String msg = GSON.toJson(notification, Notification.class);
+        sendToGame(gameID, c -> !c.authToken.equals(excludeUser), msg, false);
     }
 
     public void sendLoadCommand(int gameID, LoadGameMessage loadGameMessage) throws IOException {
-        var removeList = new ArrayList<Connection>();
-        for (var c : connections.get(gameID)) {
+        String msg = GSON.toJson(loadGameMessage, LoadGameMessage.class);
+        sendToGame(gameID, c -> true, msg, true);
+    }
+
+    public void sendOneLoadCommand(int gameID, String authToken, LoadGameMessage loadGameMessage) throws IOException {
+        String msg = GSON.toJson(loadGameMessage, LoadGameMessage.class);
+        sendToGame(gameID, c -> c.authToken.equals(authToken), msg, true);
+    }
+
+    public void sendError(String authToken, ErrorMessage errorMessage) throws IOException {
+        String msg = GSON.toJson(errorMessage, ErrorMessage.class);
+        for (var c : byAuth.getOrDefault(authToken, Set.of())) {
             if (c.session.isOpen()) {
-                String msg = new Gson().toJson(loadGameMessage, LoadGameMessage.class);
                 c.send(msg);
             } else {
-                removeList.add(c);
+                remove(c);
             }
         }
+    }
 
-        // Clean up any connections that were left open.
-        for (var c : removeList) {
-            ArrayList<Connection> tmp = connections.get(gameID);
-            tmp.remove(c);
-            connections.put(gameID, tmp);
+    /**
+     * Replies to the session a command came from, whether or not it has joined a game yet
+     */
+    public void sendError(Session session, ErrorMessage errorMessage) {
+        String msg = GSON.toJson(errorMessage, ErrorMessage.class);
+        // Through the session's own queue when it has one, so the reply stays in order
+        Iterator<Connection> joined = bySession.getOrDefault(session, Set.of()).iterator();
+        if (joined.hasNext()) {
+            joined.next().send(msg);
+        } else if (session.isOpen()) {
+            session.getRemote().sendStringByFuture(msg);
         }
     }
 
-    public void sendOneLoadCommand(int gameID, String authToken, LoadGameMessage loadGameMessage) throws IOException {
-        var removeList = new ArrayList<Connection>();
-        for (var c : connections.get(gameID)) {
-            if (c.session.isOpen()) {
-                if (c.authToken.equals(authToken)) {
-                    String msg = new Gson().toJson(loadGameMessage, LoadGameMessage.class);
-                    c.send(msg);
-                }
-            } else {
-                removeList.add(c);
-            }
+    /**
+     * @return the messages waiting to be written across every connection in the game
+     */
+    public int queueDepth(int gameID) {
+        int depth = 0;
+        for (var c : byGame.getOrDefault(gameID, List.of())) {
+            depth += c.queueDepth();
         }
+        return depth;
+    }
 
-        // Clean up any connections that were left open.
-        for (var c : removeList) {
-            ArrayList<Connection> tmp = connections.get(gameID);
-            tmp.remove(c);
-            connections.put(gameID, tmp);
+    /**
+     * @return the messages waiting to be written across every connection
+     */
+    public int queueDepth() {
+        int depth = 0;
+        for (var connections : byGame.values()) {
+            for (var c : connections) {
+                depth += c.queueDepth();
+            }
         }
+        return depth;
     }
 
-    public void sendError(String authToken, ErrorMessage errorMessage) throws IOException {
-        var removeList = new ArrayList<Connection>();
-        for (int gameID : connections.keySet()) {
-            for (var c : connections.get(gameID)) {
-                if (c.session.isOpen()) {
-                    if (c.authToken.equals(authToken)) {
-                        String msg = new Gson().toJson(errorMessage, ErrorMessage.class);
-                        c.send(msg);
-                    }
-                } else {
-                    removeList.add(c);
-                }
-            }
+    /**
+     * @return the number of sessions connected to at least one game
+     */
+    public int sessionCount() {
+        return bySession.size();
+    }
 
-            // Clean up any connections that were left open.
-            for (var c : removeList) {
-                ArrayList<Connection> tmp = connections.get(gameID);
-                tmp.remove(c);
-                connections.put(gameID, tmp);
+    // Queues an already encoded message on the game's connections that match
+    private void sendToGame(int gameID, Predicate<Connection> recipients, String msg, boolean gameState) {
+        for (var c : byGame.getOrDefault(gameID, List.of())) {
+            if (!c.session.isOpen()) {
+                // Clean up any connections that were left open.
+                remove(c);
+            } else if (recipients.test(c)) {
+                c.send(msg, gameState);
             }
         }
     }
-}
\ No newline at end of file
+
+    private void remove(Connection c) {
+        bySession.computeIfPresent(c.session, (s, connections) -> {
+            if (connections.remove(c)) {
+                unindex(c);
+            }
+            return connections.isEmpty() ? null : connections;
+        });
+    }
+
+    // Drops a connection from the game and auth indexes; only called inside a compute on its session
+    private void unindex(Connection c) {
+        byGame.computeIfPresent(c.gameID, (id, list) -> {
+            list.remove(c);
+            return list.isEmpty() ? null : list;
+        });
+        byAuth.computeIfPresent(c.authToken, (auth, set) -> {
+            set.remove(c);
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
@@ -0,0 +1,91 @@
+package server.websocket;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the commands for each game one at a time, in the order they arrived,
+ * while commands for different games run in parallel.
+ * <p>
+ * A game has a mailbox only while it has commands waiting or running. The
+ * first command submitted creates the mailbox and starts a task on the
+ * executor that runs commands until the queue is empty, then removes the
+ * mailbox. Commands are added and empty mailboxes removed inside the map's
+ * compute for that game, so a command can never land in a mailbox that is
+ * being removed. Only one task drains a game at a time, so a game's state
+ * is only ever touched by one thread at once and needs no locks, a busy
+ * game never holds up the others, and idle games cost nothing.
+ */
+public class GameMailboxes {
+    private final Executor executor;
+    private final ConcurrentHashMap<Integer, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    /**
+     * Drains each mailbox on its own virtual thread
+     */
+    public GameMailboxes() {
+        this(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public GameMailboxes(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Queues a command to run after every command already queued for the game
+     */
+    public void submit(int gameID, Runnable command) {
+        Mailbox[] created = new Mailbox[1];
+        mailboxes.compute(gameID, (id, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new Mailbox(id);
+                created[0] = mailbox;
+            }
+            mailbox.commands.add(command);
+            return mailbox;
+        });
+        // A mailbox already in the map has a task draining it
+        if (created[0] != null) {
+            executor.execute(created[0]);
+        }
+    }
+
+    /**
+     * @return the number of games with commands waiting or running
+     */
+    public int activeGames() {
+        return mailboxes.size();
+    }
+
+    private final class Mailbox implements Runnable {
+        private final int gameID;
+        private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+        Mailbox(int gameID) {
+            this.gameID = gameID;
+        }
+
+        @Override
+        public void run() {
+            do {
+                Runnable command;
+                while ((command = commands.poll()) != null) {
+                    try {
+                        command.run();
+                    } catch (RuntimeException e) {
+                        // One failed command must not stop the game's later ones
+                        System.out.println("Game command failed: " + e);
+                    }
+                }
+            } while (!retireIfEmpty());
+        }
+
+        // Removes the mailbox if nothing was added since the last poll, or keeps it for another pass
+        private boolean retireIfEmpty() {
+            return mailboxes.compute(gameID, (id, mailbox) -> commands.isEmpty() ? null : mailbox) == null;
+        }
+    }
+}
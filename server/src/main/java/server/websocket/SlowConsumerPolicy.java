@@ -0,0 +1,20 @@
+package server.websocket;
+
+/**
+ * What a {@link Connection} does when its client reads more slowly than the
+ * server sends and messages pile up in its outbound queue
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * A new LOAD_GAME replaces any LOAD_GAME still waiting to be sent, since
+     * the client only needs the latest board. Notifications and errors are
+     * never dropped, so a client that still falls behind by the high-water
+     * mark is disconnected.
+     */
+    DROP_STALE_STATES,
+    /**
+     * Every message is kept, and the client is disconnected as soon as the
+     * high-water mark is reached
+     */
+    DISCONNECT
+}
@@ -3,13 +3,17 @@ package server.websocket;
 import chess.ChessGame;
 import chess.ChessMove;
 import chess.ChessPiece;
-import chess.ChessPosition;
+import chess.PositionSnapshot;
+import chess.notation.Squares;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import dataaccess.*;
 import exception.ResponseException;
 import model.*;
+import result.StatusResult;
 import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
 import org.eclipse.jetty.websocket.api.annotations.WebSocket;
 import service.GameService;
@@ -21,37 +25,90 @@ import java.util.Objects;
 
 @WebSocket
 public class WebSocketHandler {
+    private static final Gson GSON = new Gson();
 
-    private final ConnectionManager connections = new ConnectionManager();
+    private final ConnectionManager connections;
+    private final GameMailboxes mailboxes = new GameMailboxes();
     private final GameService gameService;
 
-    {
+    public WebSocketHandler() {
+        this(new ConnectionManager());
+    }
+
+    public WebSocketHandler(ConnectionManager connections) {
+        this(connections, sqlGameService());
+    }
+
+    /**
+     * @param connections delivers messages to clients, with the server's slow-consumer settings
+     * @param gameService the service the server's HTTP routes use, so both see the same games in memory
+     */
+    public WebSocketHandler(ConnectionManager connections, GameService gameService) {
+        this.connections = connections;
+        this.gameService = gameService;
+    }
+
+    private static GameService sqlGameService() {
         try {
-            gameService = new GameService(new SqlDataAccess(), new SqlDataAccess());
+            return new GameService(new SqlDataAccess(), new SqlDataAccess());
         } catch (DataAccessException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * @return connected sessions, messages waiting to be sent and games with commands in progress
+     */
+    public StatusResult status() {
+        return new StatusResult(connections.sessionCount(), connections.queueDepth(), mailboxes.activeGames());
+    }
+
     @OnWebSocketMessage
-    public void onMessage(Session session, String message) throws ResponseException {
-        UserGameCommand cmd = new Gson().fromJson(message, UserGameCommand.class);
-
-        switch (cmd.getCommandType()) {
-            case CONNECT -> connect(message, session);
-            case MAKE_MOVE -> makeMove(message, session);
-            case LEAVE -> leaveGame(message, session);
-            case RESIGN -> resignGame(message, session);
+    public void onMessage(Session session, String message) {
+        UserGameCommand cmd;
+        try {
+            cmd = GSON.fromJson(message, UserGameCommand.class);
+        } catch (JsonParseException e) {
+            cmd = null;
         }
+        if (cmd == null || cmd.getCommandType() == null) {
+            connections.sendError(session, new ErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: bad command"));
+            return;
+        }
+
+        UserGameCommand.CommandType type = cmd.getCommandType();
+
+        // Jetty may deliver commands for one game on several threads at once, so each game's
+        // commands are queued and run one at a time, in order; different games still run in parallel
+        mailboxes.submit(cmd.getGameID(), () -> {
+            try {
+                switch (type) {
+                    case CONNECT -> connect(message, session);
+                    case MAKE_MOVE -> makeMove(message, session);
+                    case LEAVE -> leaveGame(message, session);
+                    case RESIGN -> resignGame(message, session);
+                }
+            } catch (ResponseException | RuntimeException e) {
+                // Includes commands that fail to parse, such as a move that is not valid UCI
+                String problem = (e.getMessage() == null) ? "bad command" : e.getMessage();
+                connections.sendError(session, new ErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: " + problem));
+            }
+        });
+    }
+
+    @OnWebSocketClose
+    public void onClose(Session session, int statusCode, String reason) {
+        // Drop the session from every game it was in, rather than waiting for a send to find it closed
+        connections.removeSession(session);
     }
 
     public void connect(String message, Session session) throws ResponseException {
-        ConnectCommand cmd = new Gson().fromJson(message, ConnectCommand.class);
+        ConnectCommand cmd = GSON.fromJson(message, ConnectCommand.class);
         int gameID = cmd.getGameID();
         String auth = cmd.getAuthString();
         connections.add(gameID, auth, session);
 
-        JsonObject authDataJson = new Gson().fromJson(auth, JsonObject.class);
+        JsonObject authDataJson = GSON.fromJson(auth, JsonObject.class);
 
         String user = authDataJson.get("username").getAsString();
         String authToken = authDataJson.get("authToken").getAsString();
@@ -69,8 +126,9 @@ public class WebSocketHandler {
 
         ChessGame.TeamColor teamColor = cmd.getPlayerColor();
         //check for errors
-        GameData gameData = gameService.getGame(gameID);
-        ChessGame game = gameData.game();
+        GameView gameData = gameService.getGame(gameID);
+        // The published position, never the live game another thread may be changing
+        PositionSnapshot game = gameData.game();
         String username = gameService.getUsername(new AuthData(authToken, user));
         //if (teamColor == ChessGame.TeamColor.WHITE)
         //{
@@ -98,84 +156,90 @@ public class WebSocketHandler {
     }
 
     public void makeMove(String message, Session session) throws ResponseException{
-        MakeMoveCommand cmd = new Gson().fromJson(message, MakeMoveCommand.class);
+        MakeMoveCommand cmd = GSON.fromJson(message, MakeMoveCommand.class);
         int gameID = cmd.getGameID();
         String auth = cmd.getAuthString();
 
-        JsonObject authDataJson = new Gson().fromJson(auth, JsonObject.class);
+        JsonObject authDataJson = GSON.fromJson(auth, JsonObject.class);
         String user = authDataJson.get("username").getAsString();
         String authToken = authDataJson.get("authToken").getAsString();
 
         String username = gameService.getUsername(new AuthData(authToken, user));
-        ChessGame game = gameService.getGame(gameID).game();
-        GameData gameData = gameService.getGame(gameID);
+        GameView gameData = gameService.getGame(gameID);
+        // The position before the move, for the turn check and the move notification
+        PositionSnapshot before = gameService.getSnapshot(gameID);
         ChessMove move = cmd.getMove();
-        ChessPiece piece = game.getBoard().getPiece(move.getStartPosition());
-
-        try {
-            gameService.makeMove(gameID, new AuthData(auth, username), move);
-        } catch (ResponseException e) {
+        if (before == null) {
             try {
-                connections.sendError(auth, new ErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: bad move"));
-            } catch (IOException ex) {
-                throw new ResponseException(500, ex.getMessage());
-            }
-            return;
-        }
-
-        if ((game.getTeamTurn() == ChessGame.TeamColor.WHITE && !(Objects.equals(gameData.whiteUsername(), username))) ||
-                (game.getTeamTurn() == ChessGame.TeamColor.BLACK && !(Objects.equals(gameData.blackUsername(), username))))
-        {
-            try {
-                connections.sendError(auth, new ErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: not your turn"));
+                connections.sendError(auth, new ErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: bad gameID"));
             } catch (IOException e) {
                 throw new ResponseException(500, e.getMessage());
             }
             return;
         }
-
-
-        var message1 = String.format("Player %s has moved %s from %s to %s", username, piece.getPieceType().toString(), convertPos(move.getStartPosition()), convertPos(move.getEndPosition()));
-        var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message1);
-        game = gameService.getGame(gameID).game();
-        var loadGameMessage = new LoadGameMessage(ServerMessage.ServerMessageType.LOAD_GAME, game);
-
-        if (game.isInCheck(ChessGame.TeamColor.BLACK)
-        ) {
-            var checkNotification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, "Black is in check!");
+        // The piece named in the notification; a move from an empty square is refused before it reaches the game
+        ChessPiece piece = (move == null || move.getStartPosition() == null) ? null : before.getPiece(move.getStartPosition());
+        if (piece == null) {
             try {
-                connections.broadcast(gameID, null, checkNotification);
+                connections.sendError(auth, new ErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: bad move"));
             } catch (IOException e) {
                 throw new ResponseException(500, e.getMessage());
             }
+            return;
         }
-        if (game.isInCheck(ChessGame.TeamColor.WHITE)
-        ) {
-            var checkNotification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, "White is in check!");
+
+        // Checked before the move is applied, so a move out of turn never reaches the game
+        if ((before.getTeamTurn() == ChessGame.TeamColor.WHITE && !(Objects.equals(gameData.whiteUsername(), username))) ||
+                (before.getTeamTurn() == ChessGame.TeamColor.BLACK && !(Objects.equals(gameData.blackUsername(), username))))
+        {
             try {
-                connections.broadcast(gameID, null, checkNotification);
+                connections.sendError(auth, new ErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: not your turn"));
             } catch (IOException e) {
                 throw new ResponseException(500, e.getMessage());
             }
+            return;
         }
-        if (game.isInCheckmate(ChessGame.TeamColor.BLACK))
-        {
-            game.setTeamTurn(null);
-            gameService.setGame(gameID, new AuthData(auth, username), game);
-            var endGameNotification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, "White wins!");
+
+        // One move generation answers check, mate, stalemate and the draw rules together, and the
+        // service ends the game if it is over. Draws are claimed for the players so games between
+        // bots cannot cycle forever
+        ChessGame.Status status;
+        try {
+            status = gameService.makeMove(gameID, new AuthData(auth, username), move);
+        } catch (ResponseException e) {
             try {
-                connections.broadcast(gameID, null, endGameNotification);
-            } catch (IOException e) {
-                throw new ResponseException(500, e.getMessage());
+                connections.sendError(auth, new ErrorMessage(ServerMessage.ServerMessageType.ERROR, "Error: bad move"));
+            } catch (IOException ex) {
+                throw new ResponseException(500, ex.getMessage());
             }
+            return;
         }
-        if (game.isInCheckmate(ChessGame.TeamColor.WHITE))
-        {
-            game.setTeamTurn(null);
-            gameService.setGame(gameID, new AuthData(auth, username) , game);
-            var endGameNotification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, "Black wins!");
+
+        var message1 = "Player " + username + " has moved " + piece.getPieceType() + " from "
+                + Squares.name(move.getStartPosition()) + " to " + Squares.name(move.getEndPosition());
+        var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message1);
+
+        // The status is about the side now to move, the one that did not just move
+        ChessGame.TeamColor toMove = (before.getTeamTurn() == ChessGame.TeamColor.WHITE)
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        String toMoveName = (toMove == ChessGame.TeamColor.WHITE) ? "White" : "Black";
+        String winnerName = (toMove == ChessGame.TeamColor.WHITE) ? "Black" : "White";
+        String statusMessage = switch (status) {
+            case CHECK -> toMoveName + " is in check!";
+            case CHECKMATE -> winnerName + " wins!";
+            case STALEMATE -> "Draw by stalemate!";
+            case DRAW_REPETITION -> "Draw by threefold repetition!";
+            case DRAW_50 -> "Draw by the fifty-move rule!";
+            case DRAW_MATERIAL -> "Draw by insufficient material!";
+            case ONGOING -> null;
+        };
+        // Sent from the published position, which includes the game ending if it just did
+        var loadGameMessage = new LoadGameMessage(ServerMessage.ServerMessageType.LOAD_GAME,
+                gameService.getSnapshot(gameID));
+        if (statusMessage != null) {
+            var statusNotification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, statusMessage);
             try {
-                connections.broadcast(gameID, null, endGameNotification);
+                connections.broadcast(gameID, null, statusNotification);
             } catch (IOException e) {
                 throw new ResponseException(500, e.getMessage());
             }
@@ -188,54 +252,12 @@ public class WebSocketHandler {
         }
     }
 
-    public String convertPos(ChessPosition pos)
-    {
-        String str = "";
-        switch (pos.getColumn())
-        {
-            case 1: {
-                str += "a";
-                break;
-            }
-            case 2: {
-                str += "b";
-                break;
-            }
-            case 3: {
-                str += "c";
-                break;
-            }
-            case 4: {
-                str += "d";
-                break;
-            }
-            case 5: {
-                str += "e";
-                break;
-            }
-            case 6: {
-                str += "f";
-                break;
-            }
-            case 7: {
-                str += "g";
-                break;
-            }
-            case 8: {
-                str += "h";
-                break;
-            }
-        }
-        str += (pos.getRow());
-        return str;
-    }
-
     public void leaveGame(String message, Session session) throws ResponseException {
-        LeaveCommand leaveCommand = new Gson().fromJson(message, LeaveCommand.class);
+        LeaveCommand leaveCommand = GSON.fromJson(message, LeaveCommand.class);
         int gameID = leaveCommand.getGameID();
         String auth = leaveCommand.getAuthString();
 
-        JsonObject authDataJson = new Gson().fromJson(auth, JsonObject.class);
+        JsonObject authDataJson = GSON.fromJson(auth, JsonObject.class);
         String user = authDataJson.get("username").getAsString();
         String authToken = authDataJson.get("authToken").getAsString();
 
@@ -252,11 +274,11 @@ public class WebSocketHandler {
     }
 
     public void resignGame(String message, Session session) throws ResponseException {
-        ResignCommand resignCommand = new Gson().fromJson(message, ResignCommand.class);
+        ResignCommand resignCommand = GSON.fromJson(message, ResignCommand.class);
         int gameID = resignCommand.getGameID();
         String auth = resignCommand.getAuthString();
 
-        JsonObject authDataJson = new Gson().fromJson(auth, JsonObject.class);
+        JsonObject authDataJson = GSON.fromJson(auth, JsonObject.class);
         String user = authDataJson.get("username").getAsString();
         String authToken = authDataJson.get("authToken").getAsString();
 
@@ -264,7 +286,7 @@ public class WebSocketHandler {
         var message1 = String.format("Player %s has resigned", username);
         var notification = new Notification(ServerMessage.ServerMessageType.NOTIFICATION, message1);
 
-        GameData gameData = gameService.getGame(gameID);
+        GameView gameData = gameService.getGame(gameID);
         if (!Objects.equals(username, gameData.blackUsername()) && !Objects.equals(username, gameData.whiteUsername()))
         {
             try {
@@ -285,9 +307,7 @@ public class WebSocketHandler {
             return;
         }
 
-        ChessGame game = gameService.getGame(gameID).game();
-        game.setTeamTurn(null);
-        gameService.setGame(gameID, new AuthData(auth, username), game);
+        gameService.endGame(gameID, new AuthData(auth, username));
         try {
             connections.broadcast(gameID, null, notification);
         } catch (Exception e) {
@@ -8,16 +8,19 @@ public class ClearService {
     private final AuthDAO authDAO;
     private final GameDAO gameDAO;
     private final UserDAO userDAO;
+    private final GameService gameService;
 
-    public ClearService(AuthDAO authDAO, GameDAO gameDAO, UserDAO userDAO) {
+    public ClearService(AuthDAO authDAO, GameDAO gameDAO, UserDAO userDAO, GameService gameService) {
         this.authDAO = authDAO;
         this.gameDAO = gameDAO;
         this.userDAO = userDAO;
+        this.gameService = gameService;
     }
 
     public void clear(){
         authDAO.clear();
         gameDAO.clear();
         userDAO.clear();
+        gameService.clearCache();
     }
 }
@@ -3,21 +3,73 @@ package service;
 import chess.ChessGame;
 import chess.ChessMove;
 import chess.InvalidMoveException;
+import chess.PositionSnapshot;
 import exception.ResponseException;
 import model.*;
 import dataaccess.*;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 
-public class GameService {
-    private static AuthDAO authDAO;
-    private static GameDAO gameDAO;
+/**
+ * Games being played are kept in memory as live ChessGame objects, so moves
+ * and reads never wait on the database. Changes are written back by a
+ * background flusher every {@value #FLUSH_MILLIS} ms, one write per game
+ * however many moves it saw, and straight away when a game ends. Games
+ * nobody has touched for {@value #IDLE_MINUTES} minutes are written and
+ * dropped from memory. Each service has its own games and flusher, so
+ * the server and its WebSocket handler must share one; {@link #shutdown()}
+ * writes what is left, and a shutdown hook does the same if the JVM exits
+ * first.
+ */
+public final class GameService {
+    private static final long FLUSH_MILLIS = 250;
+    private static final long IDLE_MINUTES = 30;
+
+    private final AuthDAO authDAO;
+    private final GameDAO gameDAO;
+    private final Map<Integer, HotGame> hotGames = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "game-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread shutdownHook = new Thread(this::flushAll, "game-flusher-shutdown");
+
     public GameService(AuthDAO authDAO, GameDAO gameDAO) {
-        GameService.authDAO = authDAO;
-        GameService.gameDAO = gameDAO;
+        this.authDAO = authDAO;
+        this.gameDAO = gameDAO;
+        flusher.scheduleWithFixedDelay(this::flushAll, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Stops the flusher and writes every game with changes not yet stored.
+     * Called when the server stops; the service is not used afterwards.
+     */
+    public void shutdown()
+    {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(FLUSH_MILLIS * 4, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already exiting, and the hook is running or has run
+        }
     }
 
     public GameData createGame(String authToken, GameData game) throws DataAccessException {
@@ -31,12 +83,12 @@ public class GameService {
     }
 
     public void joinGame(String authToken, String playerColor, Integer gameID) throws DataAccessException {
-        GameData currentGame = gameDAO.getGame(gameID);
+        GameView currentGame = getGame(gameID);
             if (playerColor != null) {
                 playerColor = playerColor.toUpperCase();
             }
 
-            if (gameDAO.getGame(gameID) == null) {
+            if (currentGame == null) {
                 throw new IllegalArgumentException("No game with that ID"); // change message
             }
 
@@ -59,17 +111,41 @@ public class GameService {
             {
                 throw new IllegalAccessError("Already taken");
             }
-            gameDAO.joinGame(gameID, playerColor, auth);
+            // The DAO rewrites the whole row from what is stored, so a game in memory writes its
+            // pending moves first and keeps its own copy of the players up to date
+            HotGame hot = hotGames.get(gameID);
+            if (hot != null) {
+                hot.join(gameID, playerColor, auth);
+            } else {
+                gameDAO.joinGame(gameID, playerColor, auth);
+                // Loaded by another thread before the join was written
+                hot = hotGames.get(gameID);
+                if (hot != null) {
+                    hot.setPlayer(playerColor, auth.username());
+                }
+            }
     }
 
-    public static List<GameData> listGames(String authToken) throws DataAccessException {
+    public List<GameView> listGames(String authToken) throws DataAccessException {
         if(!checkAuthToken(authToken)) {
             throw new DataAccessException("unauthorized");
         }
-        return gameDAO.listGames();
+        // Games in memory may be ahead of what has been written
+        List<GameView> games = new ArrayList<>();
+        for (GameData stored : gameDAO.listGames()) {
+            HotGame hot = hotGames.get(stored.gameID());
+            games.add(hot == null ? view(stored) : hot.published());
+        }
+        return games;
+    }
+
+    // A game just read from the database belongs to this thread, so it can start publishing here
+    private static GameView view(GameData stored) {
+        return new GameView(stored.gameID(), stored.whiteUsername(), stored.blackUsername(), stored.gameName(),
+                (stored.game() == null) ? null : stored.game().snapshot());
     }
 
-    public static boolean checkAuthToken(String authToken) throws DataAccessException {
+    public boolean checkAuthToken(String authToken) throws DataAccessException {
         if(authDAO.getAuth(authToken)==null){
             throw new DataAccessException("unauthorized");
         }
@@ -84,45 +160,259 @@ public class GameService {
         }
     }
 
-    public void makeMove(int gameID, AuthData auth, ChessMove move) throws ResponseException
+    /**
+     * Plays a move, and ends the game if it leaves the other side mated,
+     * stalemated or drawn. Must be called from the thread running the
+     * game's commands.
+     *
+     * @return the game's status after the move
+     */
+    public ChessGame.Status makeMove(int gameID, AuthData auth, ChessMove move) throws ResponseException
     {
-        if (gameDAO.getGame(gameID) == null) {
-            throw new ResponseException(400, "No game with that ID");
-        }
+        HotGame hot = authorizedHot(gameID, auth);
         try {
-            if (!checkAuthToken(auth.authToken())) {
-                throw new ResponseException(401, "Unauthorized");
+            ChessGame game = hot.data.game();
+            try {
+                game.makeMove(move);
+            } catch (InvalidMoveException e) {
+                throw new ResponseException(500, "Invalid move");
             }
-        } catch (DataAccessException e) {
-            throw new RuntimeException(e);
+            ChessGame.Status status = game.status();
+            if (status.isGameOver()) {
+                game.setTeamTurn(null);
+            }
+            changed(gameID, hot);
+            return status;
+        } finally {
+            hot.end();
         }
-        GameData gameData = getGame(gameID);
-        ChessGame game = gameData.game();
+    }
+
+    /**
+     * Ends a game without a result on the board, as when a player resigns.
+     * Must be called from the thread running the game's commands.
+     */
+    public void endGame(int gameID, AuthData auth) throws ResponseException
+    {
+        HotGame hot = authorizedHot(gameID, auth);
         try {
-            game.makeMove(move);
-        } catch (InvalidMoveException e) {
-            throw new ResponseException(500, "Invalid move");
+            hot.data.game().setTeamTurn(null);
+            changed(gameID, hot);
+        } finally {
+            hot.end();
         }
-        gameDAO.makeMove(gameID, game);
     }
 
     public void setGame(int gameID, AuthData auth, ChessGame game) throws ResponseException
     {
-        if (gameDAO.getGame(gameID) == null) {
+        HotGame hot = authorizedHot(gameID, auth);
+        try {
+            if (hot.data.game() != game) {
+                GameData data = hot.data;
+                game.snapshot();
+                hot.data = new GameData(data.gameID(), data.whiteUsername(), data.blackUsername(), data.gameName(), game);
+            }
+            changed(gameID, hot);
+        } finally {
+            hot.end();
+        }
+    }
+
+    // The game for a command that changes it, kept in memory until the caller ends the command
+    private HotGame authorizedHot(int gameID, AuthData auth) throws ResponseException
+    {
+        HotGame hot = hot(gameID, true);
+        if (hot == null) {
             throw new ResponseException(400, "No game with that ID");
         }
+        boolean authorized = false;
         try {
-            if (!checkAuthToken(auth.authToken())) {
-                throw new ResponseException(401, "Unauthorized");
-            }
+            authorized = checkAuthToken(auth.authToken());
         } catch (DataAccessException e) {
             throw new RuntimeException(e);
+        } finally {
+            if (!authorized) {
+                hot.end();
+            }
         }
-        gameDAO.makeMove(gameID, game);
+        if (!authorized) {
+            throw new ResponseException(401, "Unauthorized");
+        }
+        return hot;
     }
 
-    public GameData getGame(int gameID)
+    /**
+     * Gets the latest position of a game without locking it, for readers
+     * such as spectators that only look at the board
+     *
+     * @return the position, or null if there is no game with that ID
+     */
+    public PositionSnapshot getSnapshot(int gameID)
     {
-        return gameDAO.getGame(gameID);
+        HotGame hot = hot(gameID, false);
+        return (hot == null) ? null : hot.data.game().snapshot();
+    }
+
+    /**
+     * Gets a game, from memory if it is being played. The result holds the
+     * latest published position, safe to read or serialize on any thread;
+     * moves and game endings go through this service.
+     */
+    public GameView getGame(int gameID)
+    {
+        HotGame hot = hot(gameID, false);
+        return (hot == null) ? null : hot.published();
+    }
+
+    /**
+     * Writes every game with changes not yet stored, and drops games that
+     * have been idle for too long. Runs on the flusher thread, and when the
+     * server stops.
+     */
+    public void flushAll()
+    {
+        long idleBefore = System.nanoTime() - TimeUnit.MINUTES.toNanos(IDLE_MINUTES);
+        for (Map.Entry<Integer, HotGame> entry : hotGames.entrySet()) {
+            HotGame hot = entry.getValue();
+            hot.flush(entry.getKey());
+            hot.evictIfIdle(entry.getKey(), idleBefore);
+        }
+    }
+
+    // Forgets every game held in memory, for when the database is cleared and game IDs start over
+    void clearCache()
+    {
+        hotGames.clear();
+    }
+
+    // The game in memory, loaded from the database if it is not there yet. A command that changes
+    // the game holds it in memory until it calls end
+    private HotGame hot(int gameID, boolean command)
+    {
+        while (true) {
+            HotGame hot = hotGames.get(gameID);
+            if (hot == null) {
+                GameData stored = gameDAO.getGame(gameID);
+                if (stored == null || stored.game() == null) {
+                    return null;
+                }
+                // Start publishing snapshots before any other thread can see the game
+                stored.game().snapshot();
+                HotGame loaded = new HotGame(new GameData(gameID, stored.whiteUsername(), stored.blackUsername(),
+                        stored.gameName(), stored.game()));
+                hot = hotGames.putIfAbsent(gameID, loaded);
+                if (hot == null) {
+                    hot = loaded;
+                }
+            }
+            // An entry being dropped has written its last state, so load the game again
+            if (command ? hot.begin() : hot.touch()) {
+                return hot;
+            }
+        }
+    }
+
+    // Queues a copy of the game to be written, or writes it now if the game is over. Runs on the
+    // thread that owns the game, so the copy is taken between moves
+    private static void changed(int gameID, HotGame hot)
+    {
+        ChessGame game = hot.data.game();
+        hot.pending.set(new ChessGame(game));
+        if (game.getTeamTurn() == null) {
+            hot.flush(gameID);
+        }
+    }
+
+    // A game held in memory and the copy waiting to be written, if any. The entry's lock covers
+    // dropping it, and a game is only dropped with no command in progress and nothing left to
+    // write; writes take their own lock, so a move never waits on the database
+    private final class HotGame {
+        volatile GameData data;
+        private long lastUsed = System.nanoTime();
+        private int commands;
+        private boolean evicted;
+        private final Object writeLock = new Object();
+        final AtomicReference<ChessGame> pending = new AtomicReference<>();
+
+        HotGame(GameData data) {
+            this.data = data;
+        }
+
+        // The game as other threads may see it: the players and the published position, never the live game
+        GameView published() {
+            GameData current = data;
+            return new GameView(current.gameID(), current.whiteUsername(), current.blackUsername(),
+                    current.gameName(), current.game().snapshot());
+        }
+
+        // Marks the game as used, or returns false if it has been dropped; waits while it is being dropped
+        synchronized boolean touch() {
+            lastUsed = System.nanoTime();
+            return !evicted;
+        }
+
+        // Like touch, but also keeps the game from being dropped until end is called
+        synchronized boolean begin() {
+            if (!touch()) {
+                return false;
+            }
+            commands++;
+            return true;
+        }
+
+        synchronized void end() {
+            commands--;
+            lastUsed = System.nanoTime();
+        }
+
+        // Writes the pending copy. Writes for one game are serialized, so an older copy can never
+        // land after a newer one
+        void flush(int gameID) {
+            synchronized (writeLock) {
+                ChessGame game = pending.getAndSet(null);
+                if (game == null) {
+                    return;
+                }
+                try {
+                    gameDAO.makeMove(gameID, game);
+                } catch (RuntimeException e) {
+                    pending.compareAndSet(null, game);
+                    System.out.println("Could not save game " + gameID + ": " + e.getMessage());
+                }
+            }
+        }
+
+        // Writes the last state and only then drops the entry, so a later load reads it back. No
+        // command can start while this holds the entry's lock, so nothing new is queued meanwhile;
+        // a failed write stays pending and keeps the game in memory for the next try
+        synchronized void evictIfIdle(int gameID, long idleBefore) {
+            if (evicted || commands > 0 || lastUsed - idleBefore >= 0) {
+                return;
+            }
+            synchronized (writeLock) {
+                flush(gameID);
+                if (pending.get() != null) {
+                    return;
+                }
+                evicted = true;
+                hotGames.remove(gameID, this);
+            }
+        }
+
+        synchronized void join(int gameID, String playerColor, AuthData auth) {
+            // The DAO reads the row and writes it back, so no move may be written in between
+            synchronized (writeLock) {
+                flush(gameID);
+                gameDAO.joinGame(gameID, playerColor, auth);
+            }
+            setPlayer(playerColor, auth.username());
+        }
+
+        synchronized void setPlayer(String playerColor, String username) {
+            GameData current = data;
+            data = Objects.equals(playerColor, "WHITE")
+                    ? new GameData(current.gameID(), username, current.blackUsername(), current.gameName(), current.game())
+                    : new GameData(current.gameID(), current.whiteUsername(), username, current.gameName(), current.game());
+        }
     }
 }
@@ -0,0 +1,222 @@
+package chess;
+
+/**
+ * Square indexing, piece indexing and precomputed attack tables for the
+ * bitboard representation used by {@link ChessBoard}.
+ * <p>
+ * Squares are numbered 0 (a1) through 63 (h8), rank by rank, so bit {@code n}
+ * of a bitboard corresponds to square {@code n}.
+ */
+public final class Bitboards {
+    public static final int NO_SQUARE = -1;
+
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_2 = RANK_1 << 8;
+    public static final long RANK_3 = RANK_1 << 16;
+    public static final long RANK_4 = RANK_1 << 24;
+    public static final long RANK_5 = RANK_1 << 32;
+    public static final long RANK_6 = RANK_1 << 40;
+    public static final long RANK_7 = RANK_1 << 48;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    // Ray directions; the first four step towards higher square numbers
+    private static final int NORTH = 0;
+    private static final int EAST = 1;
+    private static final int NORTH_EAST = 2;
+    private static final int NORTH_WEST = 3;
+    private static final int SOUTH = 4;
+    private static final int WEST = 5;
+    private static final int SOUTH_EAST = 6;
+    private static final int SOUTH_WEST = 7;
+    private static final int[][] DIRECTIONS = {
+            {1, 0}, {0, 1}, {1, 1}, {1, -1}, {-1, 0}, {0, -1}, {-1, 1}, {-1, -1}
+    };
+
+    private static final long[][] RAYS = new long[8][64];
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+    private static final ChessPosition[] POSITIONS = new ChessPosition[64];
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        int[][] knightOffsets = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+        int[][] kingOffsets = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+
+        for (int sq = 0; sq < 64; sq++) {
+            int rank = sq >>> 3;
+            int file = sq & 7;
+            POSITIONS[sq] = new ChessPosition(rank + 1, file + 1);
+            KNIGHT_ATTACKS[sq] = offsetsFrom(rank, file, knightOffsets);
+            KING_ATTACKS[sq] = offsetsFrom(rank, file, kingOffsets);
+            PAWN_ATTACKS[ChessGame.TeamColor.WHITE.ordinal()][sq] = offsetsFrom(rank, file, new int[][]{{1, -1}, {1, 1}});
+            PAWN_ATTACKS[ChessGame.TeamColor.BLACK.ordinal()][sq] = offsetsFrom(rank, file, new int[][]{{-1, -1}, {-1, 1}});
+
+            for (int dir = 0; dir < 8; dir++) {
+                long ray = 0L;
+                int r = rank + DIRECTIONS[dir][0];
+                int f = file + DIRECTIONS[dir][1];
+                while (r >= 0 && r < 8 && f >= 0 && f < 8) {
+                    ray |= 1L << (r * 8 + f);
+                    r += DIRECTIONS[dir][0];
+                    f += DIRECTIONS[dir][1];
+                }
+                RAYS[dir][sq] = ray;
+            }
+        }
+
+        // Squares between two aligned squares are where the ray out of one meets the ray back from the other
+        int[] opposite = {SOUTH, WEST, SOUTH_WEST, SOUTH_EAST, NORTH, EAST, NORTH_WEST, NORTH_EAST};
+        for (int sq = 0; sq < 64; sq++) {
+            for (int dir = 0; dir < 8; dir++) {
+                long ray = RAYS[dir][sq];
+                while (ray != 0) {
+                    int target = Long.numberOfTrailingZeros(ray);
+                    ray &= ray - 1;
+                    BETWEEN[sq][target] = RAYS[dir][sq] & RAYS[opposite[dir]][target];
+                    LINE[sq][target] = RAYS[dir][sq] | RAYS[opposite[dir]][sq] | bit(sq);
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    private static long offsetsFrom(int rank, int file, int[][] offsets) {
+        long targets = 0L;
+        for (int[] offset : offsets) {
+            int r = rank + offset[0];
+            int f = file + offset[1];
+            if (r >= 0 && r < 8 && f >= 0 && f < 8) {
+                targets |= 1L << (r * 8 + f);
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * @return the square index for a 1-based row and column
+     */
+    public static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    public static int square(ChessPosition position) {
+        return square(position.getRow(), position.getColumn());
+    }
+
+    /**
+     * @return the shared ChessPosition instance for a square index
+     */
+    public static ChessPosition position(int square) {
+        return POSITIONS[square];
+    }
+
+    /**
+     * @return the 1-based row of a square index
+     */
+    public static int row(int square) {
+        return (square >>> 3) + 1;
+    }
+
+    /**
+     * @return the 1-based column of a square index
+     */
+    public static int column(int square) {
+        return (square & 7) + 1;
+    }
+
+    /**
+     * @return index (0-11) of the bitboard holding pieces of the given color and type
+     */
+    public static int pieceIndex(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return color.ordinal() * 6 + type.ordinal();
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * @return squares a pawn of the given color standing on {@code square} attacks
+     */
+    public static long pawnAttacks(ChessGame.TeamColor color, int square) {
+        return PAWN_ATTACKS[color.ordinal()][square];
+    }
+
+    public static long rookAttacks(int square, long occupied) {
+        return positiveRay(NORTH, square, occupied) | positiveRay(EAST, square, occupied)
+                | negativeRay(SOUTH, square, occupied) | negativeRay(WEST, square, occupied);
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        return positiveRay(NORTH_EAST, square, occupied) | positiveRay(NORTH_WEST, square, occupied)
+                | negativeRay(SOUTH_EAST, square, occupied) | negativeRay(SOUTH_WEST, square, occupied);
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    /**
+     * @return the squares strictly between two squares that share a rank, file
+     * or diagonal, or 0 if they do not
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * @return every square on the rank, file or diagonal through both squares
+     * (edge to edge), or 0 if they are not aligned
+     */
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    /**
+     * @return the squares attacked by a non-pawn piece of the given type
+     */
+    public static long attacks(ChessPiece.PieceType type, int square, long occupied) {
+        return switch (type) {
+            case KING -> KING_ATTACKS[square];
+            case QUEEN -> queenAttacks(square, occupied);
+            case BISHOP -> bishopAttacks(square, occupied);
+            case KNIGHT -> KNIGHT_ATTACKS[square];
+            case ROOK -> rookAttacks(square, occupied);
+            case PAWN -> throw new IllegalArgumentException("Pawn attacks depend on color");
+        };
+    }
+
+    // Rays towards higher squares stop at their lowest set blocker
+    private static long positiveRay(int dir, int square, long occupied) {
+        long attacks = RAYS[dir][square];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            attacks ^= RAYS[dir][Long.numberOfTrailingZeros(blockers)];
+        }
+        return attacks;
+    }
+
+    // Rays towards lower squares stop at their highest set blocker
+    private static long negativeRay(int dir, int square, long occupied) {
+        long attacks = RAYS[dir][square];
+        long blockers = attacks & occupied;
+        if (blockers != 0) {
+            attacks ^= RAYS[dir][63 - Long.numberOfLeadingZeros(blockers)];
+        }
+        return attacks;
+    }
+}
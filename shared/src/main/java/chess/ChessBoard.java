@@ -1,23 +1,125 @@
 package chess;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.util.Arrays;
-import java.util.Objects;
 
 /**
  * A chessboard that can hold and rearrange chess pieces.
  * <p>
+ * Pieces are tracked as one 64-bit bitboard per color and type plus
+ * occupancy masks, so move generation and attack tests can work on whole
+ * sets of squares at once. The position based methods are kept as a facade
+ * over that representation.
+ * <p>
  * Note: You can add to this class, but you may not alter
  * signature of the existing methods.
  */
+// Saved and sent as its pieces and position state; see ChessBoardAdapter
+@JsonAdapter(ChessBoardAdapter.class)
 public class ChessBoard {
-    private ChessPiece[][] board;
-    private ChessPosition enPassantPosition;
-    public boolean hasEnPassantBeenSet = false;
-    boolean whiteHasMovedPawn = false;
-    boolean blackHasMovedPawn = false;
+    // One bitboard per (color, type) pair, indexed by Bitboards.pieceIndex
+    private long[] pieceBitboards;
+    // Occupancy masks per color, indexed by TeamColor ordinal
+    private long[] colorBitboards;
+    private long occupied;
+    // Piece objects by square index, so getPiece hands back what addPiece was given
+    private ChessPiece[] squares;
+    // Square of each team's king, indexed by TeamColor ordinal, or NO_SQUARE if it has none
+    private int[] kingSquares;
+    // Zobrist key of the pieces alone, XORed as each piece is added or removed
+    private long pieceKey;
+    // Running PieceSquareTables totals, positive for white, and the phase from the pieces on the board
+    private int midgameScore;
+    private int endgameScore;
+    private int phase;
+    // Bit set of the castling moves still allowed, or CASTLING_UNKNOWN until first needed
+    private int castlingRights;
+    private int enPassantSquare;
+    private int halfmoveClock;
+
+    // Undo stack filled by makeMove and drained by unmakeMove; not part of the saved position
+    private transient int[] undoStates;
+    private transient ChessPiece[] undoMoved;
+    private transient ChessPiece[] undoCaptured;
+    private transient int undoSize;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING = 15;
+    private static final int CASTLING_UNKNOWN = -1;
+
+    // Castling rights kept when a move starts or ends on each square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    // Shared piece placed by each promotion, indexed by Bitboards.pieceIndex; already marked
+    // as moved, so nothing ever writes to them and every board can hold the same instance
+    private static final ChessPiece[] PROMOTED = new ChessPiece[12];
+
+    static {
+        Arrays.fill(CASTLING_MASK, ALL_CASTLING);
+        CASTLING_MASK[Bitboards.square(1, 1)] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[Bitboards.square(1, 5)] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[Bitboards.square(1, 8)] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[Bitboards.square(8, 1)] &= ~BLACK_QUEENSIDE;
+        CASTLING_MASK[Bitboards.square(8, 5)] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASK[Bitboards.square(8, 8)] &= ~BLACK_KINGSIDE;
+
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+                ChessPiece piece = new ChessPiece(color, type);
+                piece.setHasMoved(true);
+                PROMOTED[Bitboards.pieceIndex(color, type)] = piece;
+            }
+        }
+    }
 
     public ChessBoard() {
-        this.board = new ChessPiece[8][8];
+        clear();
+    }
+
+    /**
+     * Creates an independent copy of another board's position, sharing its
+     * piece objects but not its undo history, so a search can play moves on
+     * the copy without touching the original
+     *
+     * @param other the board to copy
+     */
+    public ChessBoard(ChessBoard other) {
+        clear();
+        System.arraycopy(other.pieceBitboards, 0, pieceBitboards, 0, pieceBitboards.length);
+        System.arraycopy(other.colorBitboards, 0, colorBitboards, 0, colorBitboards.length);
+        System.arraycopy(other.squares, 0, squares, 0, squares.length);
+        System.arraycopy(other.kingSquares, 0, kingSquares, 0, kingSquares.length);
+        this.occupied = other.occupied;
+        this.pieceKey = other.pieceKey;
+        this.midgameScore = other.midgameScore;
+        this.endgameScore = other.endgameScore;
+        this.phase = other.phase;
+        this.castlingRights = other.getCastlingRights();
+        this.enPassantSquare = other.enPassantSquare;
+        this.halfmoveClock = other.halfmoveClock;
+    }
+
+    private void clear() {
+        this.pieceBitboards = new long[12];
+        this.colorBitboards = new long[2];
+        this.occupied = 0L;
+        this.pieceKey = 0L;
+        this.midgameScore = 0;
+        this.endgameScore = 0;
+        this.phase = 0;
+        this.squares = new ChessPiece[64];
+        this.kingSquares = new int[]{Bitboards.NO_SQUARE, Bitboards.NO_SQUARE};
+        this.castlingRights = CASTLING_UNKNOWN;
+        this.enPassantSquare = Bitboards.NO_SQUARE;
+        this.halfmoveClock = 0;
+        this.undoStates = new int[64];
+        this.undoMoved = new ChessPiece[64];
+        this.undoCaptured = new ChessPiece[64];
+        this.undoSize = 0;
     }
 
     /**
@@ -27,9 +129,11 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-//         System.out.println("Adding " + piece.getPieceType() + " to position " + position);
-
-        this.board[position.getRow() - 1][position.getColumn() - 1] = piece;
+        int square = Bitboards.square(position);
+        clearSquare(square);
+        if (piece != null) {
+            setSquare(square, piece);
+        }
     }
 
     /**
@@ -38,9 +142,7 @@ public class ChessBoard {
      * @param position where to add the piece to
      */
     public void removePiece(ChessPosition position) {
-        //System.out.println("Removing piece at position " + position);
-
-        this.board[position.getRow() - 1][position.getColumn() - 1] = null;
+        clearSquare(Bitboards.square(position));
     }
 
     /**
@@ -51,34 +153,338 @@ public class ChessBoard {
      * position
      */
     public ChessPiece getPiece(ChessPosition position) {
-        return this.board[position.getRow() - 1][position.getColumn() - 1];
+        return this.squares[Bitboards.square(position)];
+    }
+
+    /**
+     * @return the piece on a square index (0 = a1, 63 = h8), or null
+     */
+    public ChessPiece getPiece(int square) {
+        return this.squares[square];
+    }
+
+    /**
+     * @return bitboard of the squares holding pieces of the given color and type
+     */
+    public long pieces(ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        return pieceBitboards[Bitboards.pieceIndex(color, type)];
+    }
+
+    /**
+     * @return bitboard of the squares holding pieces of the given color
+     */
+    public long pieces(ChessGame.TeamColor color) {
+        return colorBitboards[color.ordinal()];
     }
 
-    // Set the en passant position when a pawn moves two squares
+    /**
+     * @return bitboard of every occupied square
+     */
+    public long occupied() {
+        return occupied;
+    }
+
+    /**
+     * Gets the Zobrist key of the position: the pieces on the board, the
+     * castling rights, the en passant file and the given side to move.
+     * Positions with equal keys can be treated as the same position.
+     *
+     * @param sideToMove the team whose turn it is
+     * @return the 64-bit position key
+     */
+    public long positionKey(ChessGame.TeamColor sideToMove) {
+        return pieceKey ^ Zobrist.castling(getCastlingRights()) ^ Zobrist.enPassant(enPassantSquare)
+                ^ Zobrist.sideToMove(sideToMove);
+    }
+
+    /**
+     * Gets the material and placement score of the position, blended between
+     * middlegame and endgame values by how many pieces are left. It is kept
+     * up to date as pieces move, so this is cheap to call.
+     *
+     * @return the score in centipawns, positive when white is ahead
+     */
+    public int materialScore() {
+        return PieceSquareTables.taper(midgameScore, endgameScore, phase);
+    }
+
+    /**
+     * @return the game phase, {@link PieceSquareTables#MAX_PHASE} with every
+     * starting piece on the board down to 0 with only kings and pawns
+     */
+    public int getPhase() {
+        return phase;
+    }
+
+    private void setSquare(int square, ChessPiece piece) {
+        long bit = Bitboards.bit(square);
+        int index = Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType());
+        squares[square] = piece;
+        pieceBitboards[index] |= bit;
+        colorBitboards[piece.getTeamColor().ordinal()] |= bit;
+        occupied |= bit;
+        pieceKey ^= Zobrist.piece(piece.getTeamColor(), piece.getPieceType(), square);
+        midgameScore += PieceSquareTables.midgame(index, square);
+        endgameScore += PieceSquareTables.endgame(index, square);
+        phase += PieceSquareTables.phase(index);
+        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+            kingSquares[piece.getTeamColor().ordinal()] = square;
+        }
+    }
+
+    private void clearSquare(int square) {
+        ChessPiece piece = squares[square];
+        if (piece == null) {
+            return;
+        }
+        long bit = Bitboards.bit(square);
+        int index = Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType());
+        squares[square] = null;
+        pieceBitboards[index] &= ~bit;
+        colorBitboards[piece.getTeamColor().ordinal()] &= ~bit;
+        occupied &= ~bit;
+        pieceKey ^= Zobrist.piece(piece.getTeamColor(), piece.getPieceType(), square);
+        midgameScore -= PieceSquareTables.midgame(index, square);
+        endgameScore -= PieceSquareTables.endgame(index, square);
+        phase -= PieceSquareTables.phase(index);
+        if (piece.getPieceType() == ChessPiece.PieceType.KING) {
+            long kings = pieceBitboards[index];
+            kingSquares[piece.getTeamColor().ordinal()] = (kings == 0) ? Bitboards.NO_SQUARE : Long.numberOfTrailingZeros(kings);
+        }
+    }
+
+    /**
+     * @return the square index of the given team's king, or {@link Bitboards#NO_SQUARE}
+     */
+    public int getKingSquare(ChessGame.TeamColor color) {
+        return kingSquares[color.ordinal()];
+    }
+
+    /**
+     * Determines whether a piece of the given team attacks a square. Rather than
+     * generating the attacking team's moves, this looks outward from the square:
+     * a rook ray that reaches an enemy rook or queen, a knight jump that lands on
+     * an enemy knight, and so on.
+     *
+     * @param square   the square index to test
+     * @param byColor  the attacking team
+     * @return True if the square is attacked
+     */
+    public boolean isSquareAttacked(int square, ChessGame.TeamColor byColor) {
+        return attackersTo(square, byColor, occupied) != 0;
+    }
+
+    public boolean isSquareAttacked(ChessPosition position, ChessGame.TeamColor byColor) {
+        return isSquareAttacked(Bitboards.square(position), byColor);
+    }
+
+    /**
+     * @return bitboard of the pieces of the given team attacking a square,
+     * treating {@code occupancy} as the set of blocking squares
+     */
+    public long attackersTo(int square, ChessGame.TeamColor byColor, long occupancy) {
+        int base = byColor.ordinal() * 6;
+        long queens = pieceBitboards[base + ChessPiece.PieceType.QUEEN.ordinal()];
+        long rooksQueens = pieceBitboards[base + ChessPiece.PieceType.ROOK.ordinal()] | queens;
+        long bishopsQueens = pieceBitboards[base + ChessPiece.PieceType.BISHOP.ordinal()] | queens;
+        // A pawn of the defending color on this square would attack exactly the squares enemy pawns attack it from
+        ChessGame.TeamColor defender = MoveGenerator.opponent(byColor);
+        return (Bitboards.pawnAttacks(defender, square) & pieceBitboards[base + ChessPiece.PieceType.PAWN.ordinal()])
+                | (Bitboards.knightAttacks(square) & pieceBitboards[base + ChessPiece.PieceType.KNIGHT.ordinal()])
+                | (Bitboards.kingAttacks(square) & pieceBitboards[base + ChessPiece.PieceType.KING.ordinal()])
+                | (Bitboards.rookAttacks(square, occupancy) & rooksQueens)
+                | (Bitboards.bishopAttacks(square, occupancy) & bishopsQueens);
+    }
+
+    /**
+     * @return True if the given team's king is attacked; a team without a king is never in check
+     */
+    public boolean isInCheck(ChessGame.TeamColor color) {
+        int king = kingSquares[color.ordinal()];
+        return king != Bitboards.NO_SQUARE && isSquareAttacked(king, MoveGenerator.opponent(color));
+    }
+
+    /**
+     * Sets the square a pawn skipped over with its last two-square move, or
+     * null if the last move was not one
+     */
     public void setEnPassantPosition(ChessPosition position) {
-        enPassantPosition = position;
-        hasEnPassantBeenSet = true;
+        enPassantSquare = (position == null) ? Bitboards.NO_SQUARE : Bitboards.square(position);
     }
 
     public ChessPosition getEnPassantPosition() {
-        return enPassantPosition;
+        return (enPassantSquare == Bitboards.NO_SQUARE) ? null : Bitboards.position(enPassantSquare);
     }
 
     public void clearEnPassantPosition() {
-        enPassantPosition = null;
-        hasEnPassantBeenSet = false;
+        enPassantSquare = Bitboards.NO_SQUARE;
     }
 
-    public boolean hasEnPassantBeenSet() {
-        return false;
+    /**
+     * @return the en passant target square index, or {@link Bitboards#NO_SQUARE}
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
     }
 
-    public boolean hasTeamMoved(ChessGame.TeamColor teamColor) {
-        if (teamColor == ChessGame.TeamColor.WHITE) {
-            return whiteHasMovedPawn;
-        } else {
-            return blackHasMovedPawn;
+    /**
+     * @return number of half moves since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public void setHalfmoveClock(int halfmoveClock) {
+        this.halfmoveClock = halfmoveClock;
+    }
+
+    /**
+     * Gets the castling moves that are still allowed, as a combination of
+     * {@link #WHITE_KINGSIDE}, {@link #WHITE_QUEENSIDE}, {@link #BLACK_KINGSIDE}
+     * and {@link #BLACK_QUEENSIDE}.
+     * <p>
+     * A board built up with addPiece has no move history, so its rights are
+     * worked out the first time they are needed from where the kings and rooks
+     * stand and whether they have moved.
+     */
+    public int getCastlingRights() {
+        if (castlingRights == CASTLING_UNKNOWN) {
+            castlingRights = castlingRightsFromPlacement(ChessGame.TeamColor.WHITE, 1, WHITE_KINGSIDE, WHITE_QUEENSIDE)
+                    | castlingRightsFromPlacement(ChessGame.TeamColor.BLACK, 8, BLACK_KINGSIDE, BLACK_QUEENSIDE);
+        }
+        return castlingRights;
+    }
+
+    public void setCastlingRights(int castlingRights) {
+        this.castlingRights = castlingRights;
+    }
+
+    private int castlingRightsFromPlacement(ChessGame.TeamColor color, int row, int kingside, int queenside) {
+        if (!isUnmoved(Bitboards.square(row, 5), color, ChessPiece.PieceType.KING)) {
+            return 0;
         }
+        int rights = 0;
+        if (isUnmoved(Bitboards.square(row, 8), color, ChessPiece.PieceType.ROOK)) {
+            rights |= kingside;
+        }
+        if (isUnmoved(Bitboards.square(row, 1), color, ChessPiece.PieceType.ROOK)) {
+            rights |= queenside;
+        }
+        return rights;
+    }
+
+    private boolean isUnmoved(int square, ChessGame.TeamColor color, ChessPiece.PieceType type) {
+        ChessPiece piece = squares[square];
+        return piece != null && piece.getTeamColor() == color && piece.getPieceType() == type && !piece.hasMoved();
+    }
+
+    /**
+     * Plays a {@link PackedMove} encoded move produced by {@link MoveGenerator},
+     * including the rook hop of a castle, the pawn removed by en passant and
+     * promotion. The move is not checked for legality.
+     * <p>
+     * Everything needed to take the move back is pushed onto an undo stack,
+     * so each call can be reversed exactly with {@link #unmakeMove(int)}.
+     *
+     * @param move the packed move to play
+     */
+    public void makeMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        ChessPiece piece = squares[from];
+        ChessGame.TeamColor color = piece.getTeamColor();
+        int rights = getCastlingRights();
+
+        if (undoSize == undoStates.length) {
+            growUndoStack();
+        }
+        undoStates[undoSize] = rights | ((enPassantSquare + 1) << 4) | (halfmoveClock << 11);
+        undoMoved[undoSize] = piece;
+
+        int captureSquare = PackedMove.isEnPassant(move) ? enPassantVictim(to, color) : to;
+        ChessPiece captured = squares[captureSquare];
+        undoCaptured[undoSize] = captured;
+        undoSize++;
+
+        clearSquare(captureSquare);
+        clearSquare(from);
+        ChessPiece.PieceType promotion = PackedMove.promotion(move);
+        setSquare(to, (promotion == null) ? piece : PROMOTED[Bitboards.pieceIndex(color, promotion)]);
+
+        if (PackedMove.isCastle(move)) {
+            int rookFrom = castlingRookFrom(from, to);
+            int rookTo = (from + to) >>> 1;
+            ChessPiece rook = squares[rookFrom];
+            clearSquare(rookFrom);
+            setSquare(rookTo, rook);
+        }
+
+        castlingRights = rights & CASTLING_MASK[from] & CASTLING_MASK[to];
+
+        // Only remember the skipped square when an enemy pawn could actually capture onto it
+        enPassantSquare = Bitboards.NO_SQUARE;
+        if (PackedMove.isDoublePush(move)) {
+            int skipped = (from + to) >>> 1;
+            long enemyPawns = pieces(MoveGenerator.opponent(color), ChessPiece.PieceType.PAWN);
+            if ((Bitboards.pawnAttacks(color, skipped) & enemyPawns) != 0) {
+                enPassantSquare = skipped;
+            }
+        }
+
+        boolean irreversible = piece.getPieceType() == ChessPiece.PieceType.PAWN || captured != null;
+        halfmoveClock = irreversible ? 0 : halfmoveClock + 1;
+    }
+
+    /**
+     * Takes back the last move played with {@link #makeMove(int)}
+     *
+     * @param move the same packed move that was passed to makeMove
+     */
+    public void unmakeMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+
+        undoSize--;
+        int state = undoStates[undoSize];
+        ChessPiece piece = undoMoved[undoSize];
+        ChessPiece captured = undoCaptured[undoSize];
+        undoMoved[undoSize] = null;
+        undoCaptured[undoSize] = null;
+
+        if (PackedMove.isCastle(move)) {
+            int rookFrom = castlingRookFrom(from, to);
+            int rookTo = (from + to) >>> 1;
+            ChessPiece rook = squares[rookTo];
+            clearSquare(rookTo);
+            setSquare(rookFrom, rook);
+        }
+
+        clearSquare(to);
+        setSquare(from, piece);
+        if (captured != null) {
+            int captureSquare = PackedMove.isEnPassant(move) ? enPassantVictim(to, piece.getTeamColor()) : to;
+            setSquare(captureSquare, captured);
+        }
+
+        castlingRights = state & ALL_CASTLING;
+        enPassantSquare = ((state >>> 4) & 0x7F) - 1;
+        halfmoveClock = state >>> 11;
+    }
+
+    // The pawn taken en passant sits one rank behind the target square, from the capturer's view
+    private static int enPassantVictim(int target, ChessGame.TeamColor capturer) {
+        return (capturer == ChessGame.TeamColor.WHITE) ? target - 8 : target + 8;
+    }
+
+    private static int castlingRookFrom(int kingFrom, int kingTo) {
+        return (kingTo > kingFrom) ? kingFrom + 3 : kingFrom - 4;
+    }
+
+    private void growUndoStack() {
+        int capacity = undoStates.length * 2;
+        undoStates = Arrays.copyOf(undoStates, capacity);
+        undoMoved = Arrays.copyOf(undoMoved, capacity);
+        undoCaptured = Arrays.copyOf(undoCaptured, capacity);
     }
 
     /**
@@ -101,7 +507,7 @@ public class ChessBoard {
     }
 
     private ChessPiece selectPromotion(ChessGame.TeamColor teamColor, ChessPiece.PieceType promotionPiece) {
-        return new ChessPiece(teamColor, promotionPiece);
+        return PROMOTED[Bitboards.pieceIndex(teamColor, promotionPiece)];
     }
 
     /**
@@ -117,8 +523,9 @@ public class ChessBoard {
      * (How the game of chess normally starts)
      */
     public void resetBoard() {
-        this.board = new ChessPiece[8][8];
+        clear();
         initializeDefaultBoard();
+        castlingRights = ALL_CASTLING;
     }
 
     private void initializeDefaultBoard() {
@@ -160,13 +567,13 @@ public class ChessBoard {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ChessBoard that = (ChessBoard) o;
-        return Objects.deepEquals(board, that.board);
-        // hasEnPassantBeenSet == that.hasEnPassantBeenSet && Objects.equals(enPassantPosition, that.enPassantPosition);
+        return Arrays.equals(pieceBitboards, that.pieceBitboards);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(Arrays.deepHashCode(board));//, enPassantPosition, hasEnPassantBeenSet);
+        // The piece key covers exactly what equals compares
+        return Long.hashCode(pieceKey);
     }
 
     public String toString(ChessPosition position) {
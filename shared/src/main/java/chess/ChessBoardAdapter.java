@@ -0,0 +1,111 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Saves a board as its pieces and position state only. The bitboards, king
+ * squares, Zobrist key and scores are all worked out from the pieces, so
+ * they are rebuilt on reading rather than stored or sent to clients.
+ * <p>
+ * Pieces are written in the original {@code board} shape, an 8 by 8 array
+ * indexed [row - 1][column - 1], so games saved before the board was
+ * rewritten still load. Boards saved with the 64-entry {@code squares}
+ * array in between are read as well.
+ */
+class ChessBoardAdapter implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (type.getRawType() != ChessBoard.class) {
+            return null;
+        }
+        TypeAdapter<ChessPiece> pieces = gson.getAdapter(ChessPiece.class);
+        TypeAdapter<ChessPosition> positions = gson.getAdapter(ChessPosition.class);
+        return (TypeAdapter<T>) new TypeAdapter<ChessBoard>() {
+            @Override
+            public void write(JsonWriter out, ChessBoard board) throws IOException {
+                if (board == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginObject();
+                out.name("board").beginArray();
+                for (int row = 1; row <= 8; row++) {
+                    out.beginArray();
+                    for (int col = 1; col <= 8; col++) {
+                        pieces.write(out, board.getPiece(Bitboards.square(row, col)));
+                    }
+                    out.endArray();
+                }
+                out.endArray();
+                out.name("castlingRights").value(board.getCastlingRights());
+                out.name("enPassantSquare").value(board.getEnPassantSquare());
+                out.name("halfmoveClock").value(board.getHalfmoveClock());
+                out.endObject();
+            }
+
+            @Override
+            public ChessBoard read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                ChessBoard board = new ChessBoard();
+                in.beginObject();
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "board" -> readRows(in, board);
+                        case "squares" -> readSquares(in, board);
+                        case "castlingRights" -> board.setCastlingRights(in.nextInt());
+                        case "enPassantSquare" -> {
+                            int square = in.nextInt();
+                            board.setEnPassantPosition((square == Bitboards.NO_SQUARE) ? null : Bitboards.position(square));
+                        }
+                        // The original board kept the en passant target as a position
+                        case "enPassantPosition" -> board.setEnPassantPosition(positions.read(in));
+                        case "halfmoveClock" -> board.setHalfmoveClock(in.nextInt());
+                        // Bitboards, caches and fields of the original board, all derived from the pieces
+                        default -> in.skipValue();
+                    }
+                }
+                in.endObject();
+                return board;
+            }
+
+            private void readRows(JsonReader in, ChessBoard board) throws IOException {
+                in.beginArray();
+                for (int row = 1; in.hasNext(); row++) {
+                    in.beginArray();
+                    for (int col = 1; in.hasNext(); col++) {
+                        ChessPiece piece = pieces.read(in);
+                        if (piece != null) {
+                            board.addPiece(new ChessPosition(row, col), piece);
+                        }
+                    }
+                    in.endArray();
+                }
+                in.endArray();
+            }
+
+            private void readSquares(JsonReader in, ChessBoard board) throws IOException {
+                in.beginArray();
+                for (int square = 0; in.hasNext(); square++) {
+                    ChessPiece piece = pieces.read(in);
+                    if (piece != null) {
+                        board.addPiece(Bitboards.position(square), piece);
+                    }
+                }
+                in.endArray();
+            }
+        };
+    }
+}
@@ -1,8 +1,12 @@
 package chess;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -16,19 +20,106 @@ public class ChessGame {
     private TeamColor teamTurn;
     private TeamColor oppositeTeamColor;
     private final EndGameConditions endGameConditions;
-    private final EnPassantHandler enPassantHandler;
-    private final CastlingHandler castlingHandler;
+    // Keys of the positions reached since the last capture or pawn move, oldest first,
+    // not counting the current position; earlier positions can never come back
+    private long[] positionHistory;
+    private int historySize;
+    private int fullmoveNumber;
+    // Legal moves of the side to move in the position with key legalMovesKey, generated at most
+    // once per position and not saved with the game
+    private transient MoveList legalMoves;
+    private transient boolean legalMovesCurrent;
+    private transient long legalMovesKey;
+    private transient Map<ChessPosition, Collection<ChessMove>> legalMoveMap;
+    // The latest position published to other threads; null until someone first asks for it
+    private transient volatile PositionSnapshot snapshot;
+
+    private static final int FIFTY_MOVE_HALFMOVES = 100;
 
     public ChessGame() {
         this.board = new ChessBoard();
         this.teamTurn = TeamColor.WHITE;
         this.endGameConditions = new EndGameConditions();
-        this.enPassantHandler = new EnPassantHandler();
-        this.castlingHandler = new CastlingHandler();
+        this.positionHistory = new long[16];
+        this.historySize = 0;
+        this.fullmoveNumber = 1;
         setTeamTurn(teamTurn);
         board.resetBoard(); //allows board to be set for junit tests that need new board
     }
 
+    // Starts a game on a board that is already set up, with white to move
+    ChessGame(ChessBoard board) {
+        this.board = board;
+        this.endGameConditions = new EndGameConditions();
+        this.positionHistory = new long[16];
+        this.historySize = 0;
+        this.fullmoveNumber = 1;
+        setTeamTurn(TeamColor.WHITE);
+    }
+
+    /**
+     * Creates an independent copy of another game, including the earlier
+     * positions that count towards repetition, so the copy can be saved or
+     * played on while the original carries on
+     *
+     * @param other the game to copy
+     */
+    public ChessGame(ChessGame other) {
+        this.board = new ChessBoard(other.board);
+        // The board copy shares piece objects, and makeMove marks pieces as moved, so give the copy its own
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getPiece(square);
+            if (piece != null) {
+                ChessPiece own = new ChessPiece(piece.getTeamColor(), piece.getPieceType());
+                own.setHasMoved(piece.hasMoved());
+                board.addPiece(Bitboards.position(square), own);
+            }
+        }
+        this.endGameConditions = new EndGameConditions();
+        this.positionHistory = Arrays.copyOf(other.positionHistory, Math.max(other.historySize, 16));
+        this.historySize = other.historySize;
+        this.fullmoveNumber = other.fullmoveNumber;
+        // Assigned directly rather than through the overridable setTeamTurn; a new game has no cached moves or snapshot
+        this.teamTurn = other.teamTurn;
+        this.oppositeTeamColor = other.oppositeTeamColor;
+    }
+
+    /**
+     * Sets up a game from a FEN string, including castling rights, the en
+     * passant square and both move counters
+     *
+     * @param fen the position in Forsyth-Edwards Notation
+     * @return a new game at that position
+     * @throws IllegalArgumentException if the string is not valid FEN, or a side does not have exactly one king
+     */
+    public static ChessGame fromFen(String fen) {
+        return Fen.read(fen);
+    }
+
+    /**
+     * Writes the current position as a FEN string, for example
+     * {@code rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1}.
+     * The en passant square is only included when a capture onto it is possible.
+     *
+     * @return the position in Forsyth-Edwards Notation
+     */
+    public String toFen() {
+        return Fen.write(this);
+    }
+
+    /**
+     * @return the number of the current full move, starting at 1 and
+     * increasing after each black move
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    void setFullmoveNumber(int fullmoveNumber) {
+        this.fullmoveNumber = fullmoveNumber;
+        republish();
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -44,6 +135,8 @@ public class ChessGame {
     public void setTeamTurn(TeamColor team) {
         teamTurn = team;
         oppositeTeamColor = (team == TeamColor.WHITE) ? TeamColor.BLACK : TeamColor.WHITE;
+        clearLegalMoves();
+        republish();
     }
 
     /**
@@ -54,6 +147,26 @@ public class ChessGame {
         BLACK
     }
 
+    /**
+     * The state of the game for the team whose turn it is
+     */
+    public enum Status {
+        ONGOING,
+        CHECK,
+        CHECKMATE,
+        STALEMATE,
+        DRAW_REPETITION,
+        DRAW_50,
+        DRAW_MATERIAL;
+
+        /**
+         * @return true if no more moves can be played
+         */
+        public boolean isGameOver() {
+            return this != ONGOING && this != CHECK;
+        }
+    }
+
     /**
      * Gets a valid moves for a piece at the given location
      *
@@ -62,54 +175,99 @@ public class ChessGame {
      * startPosition
      */
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-        // Check if there is a piece at the specified position and if it's the correct team's turn
+        // Check if there is a piece at the specified position
         ChessPiece piece = this.board.getPiece(startPosition);
         if (piece == null) {
             return Collections.emptyList(); // Return an empty collection if no valid moves are possible
         }
+        if (piece.getTeamColor() == teamTurn) {
+            return allLegalMoves().getOrDefault(startPosition, Collections.emptyList());
+        }
 
-        // Calculate and return valid moves for the piece
-        Collection<ChessMove> validMoves = new ArrayList<>(piece.pieceMoves(this.board, startPosition));
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegalMoves(board, Bitboards.square(startPosition), moves);
+        return moves.toChessMoves();
+    }
 
-        // Filter out en passant moves if any piece has moved since en passant position was set
-        if (board.hasTeamMoved(teamTurn)) {
-            validMoves.removeIf(move -> isEnPassantMove(move, piece));
+    /**
+     * Gets every legal move for the team whose turn it is
+     *
+     * @return the legal moves of the side to move, or an empty collection if
+     * the game is over
+     */
+    public Collection<ChessMove> legalMoves() {
+        if (teamTurn == null) {
+            return Collections.emptyList();
         }
-        // Filter out castling moves if king or rook have moved
-        validMoves.removeIf(move -> {
-            // Check if it's a castling move
-            if (isCastlingMove(move, piece)) {
-                // Get the relevant rook for this castling move
-                ChessPiece rook = getRookForCastling(move, piece, board);
-
-                // Check if the king or rook has moved
-                return (piece.getPieceType() == ChessPiece.PieceType.KING && piece.hasMoved()) || (rook != null && rook.hasMoved());
+        return cachedLegalMoves().toChessMoves();
+    }
+
+    /**
+     * Gets every legal move for the team whose turn it is, grouped by the
+     * square the moving piece starts on. The moves are generated in one pass
+     * and kept until the position changes, so asking again, or asking
+     * {@link #validMoves} about the side to move, costs nothing.
+     *
+     * @return an unmodifiable map from each square with a movable piece to
+     * its legal moves, in square order; empty if the game is over
+     */
+    public Map<ChessPosition, Collection<ChessMove>> allLegalMoves() {
+        if (teamTurn == null) {
+            return Collections.emptyMap();
+        }
+        MoveList moves = cachedLegalMoves();
+        if (legalMoveMap == null) {
+            // Group by start square, keeping generation order within a square
+            long[] order = new long[moves.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = ((long) PackedMove.from(moves.get(i)) << 32) | i;
             }
-            return false;
-        });
-
-        // Filter out moves that would put the king in check
-        validMoves.removeIf(move -> { //validMoves.removeIf(move -> moveCalculator.isMoveInvalid(move, piece, board));
-            // Execute the move temporarily
-            ChessPosition endPosition = move.getEndPosition();
-            ChessPiece capturedPiece = this.board.getPiece(endPosition);
-            this.board.removePiece(startPosition);
-            this.board.addPiece(endPosition, piece);
-
-            // Check if the move puts the king in check
-            boolean putsKingInCheck = isInCheck(piece.getTeamColor());
-
-            // Rollback the move
-            this.board.removePiece(endPosition);
-            this.board.addPiece(startPosition, piece);
-            if (capturedPiece != null) {
-                this.board.addPiece(endPosition, capturedPiece);
+            Arrays.sort(order);
+            Map<ChessPosition, Collection<ChessMove>> map = new LinkedHashMap<>();
+            List<ChessMove> pieceMoves = new ArrayList<>();
+            for (int i = 0; i < order.length; i++) {
+                pieceMoves.add(PackedMove.toChessMove(moves.get((int) order[i])));
+                if (i == order.length - 1 || (order[i + 1] >>> 32) != (order[i] >>> 32)) {
+                    map.put(Bitboards.position((int) (order[i] >>> 32)), List.copyOf(pieceMoves));
+                    pieceMoves.clear();
+                }
             }
+            legalMoveMap = Collections.unmodifiableMap(map);
+        }
+        return legalMoveMap;
+    }
+
+    // The legal moves of the side to move, regenerated only when the position has changed. The key
+    // check also catches boards edited in place through getBoard()
+    private MoveList cachedLegalMoves() {
+        long key = positionKey();
+        if (!legalMovesCurrent || key != legalMovesKey) {
+            if (legalMoves == null) {
+                legalMoves = new MoveList();
+            }
+            legalMoves.clear();
+            MoveGenerator.generateLegalMoves(board, teamTurn, legalMoves);
+            legalMoveMap = null;
+            legalMovesKey = key;
+            legalMovesCurrent = true;
+        }
+        return legalMoves;
+    }
 
-            return putsKingInCheck;
-        });
-        //System.out.println(validMoves);
-        return validMoves;
+    private void clearLegalMoves() {
+        legalMovesCurrent = false;
+        legalMoveMap = null;
+    }
+
+    /**
+     * Gets the Zobrist key of the current position, covering piece placement,
+     * castling rights, the en passant file and the side to move. It is kept
+     * up to date as moves are played, so this is cheap to call.
+     *
+     * @return the 64-bit position key
+     */
+    public long positionKey() {
+        return board.positionKey(teamTurn);
     }
 
     /**
@@ -128,92 +286,140 @@ public class ChessGame {
         }
 
         // Check if it's the correct team's turn
-        if (piece.getTeamColor() == oppositeTeamColor) {
+        if (piece.getTeamColor() != teamTurn) {
             throw new InvalidMoveException("Not the correct team's turn.");
         }
 
-        if (board.hasEnPassantBeenSet()) {
-            board.clearEnPassantPosition();
-        }
-
-        // Calculate valid moves for the piece
-        Collection<ChessMove> validMoves = new ArrayList<>(piece.pieceMoves(board, startPosition));
-
-        // Check if the specified move is a valid move for the piece
-        if (!validMoves.contains(move)) {
+        // Find the move among the cached legal moves, which also tells us whether it castles,
+        // captures en passant or promotes
+        int packedMove = cachedLegalMoves().find(move);
+        if (packedMove == PackedMove.NONE) {
             throw new InvalidMoveException("The specified move is not a valid move for the piece.");
         }
 
-        // Check if the move is a castling move
-        if (isCastlingMove(move, piece)) {
-            // Perform castling and update the board
-            performCastling(move, piece, getRookForCastling(move, piece, board), board, teamTurn);
+        long previousKey = positionKey();
+        board.makeMove(packedMove);
+        piece.setHasMoved(true);
+        recordPosition(previousKey);
+        if (teamTurn == TeamColor.BLACK) {
+            fullmoveNumber++;
         }
 
-        // Execute the move
-        ChessPosition endPosition = move.getEndPosition();
-        ChessPiece capturedPiece = board.getPiece(endPosition);
-
-        // Update the board
-        board.removePiece(startPosition);
-        board.addPiece(endPosition, piece);
-
-            // Check if the move is a one-square move for a pawn
-            if (piece.getPieceType() == ChessPiece.PieceType.PAWN && (endPosition.getRow() == 3 || endPosition.getRow() == 6)) {
-                piece.setHasMoved(true);
-            }
-
-            // Check if the move is an initial two-square move for a pawn
-            if (piece.getPieceType() == ChessPiece.PieceType.PAWN && (endPosition.getRow() == 4 || endPosition.getRow() == 5)) {
-                piece.setHasMoved(true);
-            }
-
-            if (piece.getPieceType() == ChessPiece.PieceType.KING || piece.getPieceType() == ChessPiece.PieceType.ROOK) {
-                piece.setHasMoved(true);
-            }
+        // Move is valid; update the team turn, which also drops the cached moves and publishes the new position
+        setTeamTurn(teamTurn == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE);
+    }
 
-        // Check if any piece has moved (excluding pawns)
-        if (!(piece.getPieceType() == ChessPiece.PieceType.PAWN && Math.abs(startPosition.getRow() - endPosition.getRow()) == 2) && piece.getTeamColor() == TeamColor.WHITE) {
-            board.whiteHasMovedPawn = true;
-        } else {
-            board.blackHasMovedPawn = false;
+    /**
+     * Gets the current position as an unchangeable snapshot. This is safe to
+     * call from any thread while the game is being played on another: each
+     * move, board change or turn change publishes a complete new snapshot in
+     * one step, so readers need no locks and never see a move half made.
+     * Snapshots are only kept up to date once someone has asked for one, so
+     * the first call must come from the thread that owns the game, before
+     * other threads read it; the server does this when it loads a game.
+     *
+     * @return the latest published position
+     */
+    public PositionSnapshot snapshot() {
+        PositionSnapshot current = snapshot;
+        if (current == null) {
+            current = PositionSnapshot.of(this);
+            snapshot = current;
         }
+        return current;
+    }
 
-//            // When an opponent's pawn moves two squares forward, set the en passant position.
-            if (piece.getPieceType() == ChessPiece.PieceType.PAWN && Math.abs(startPosition.getRow() - endPosition.getRow()) == 2) {
-                ChessPosition enPassantPosition = new ChessPosition((startPosition.getRow() + endPosition.getRow()) / 2, startPosition.getColumn());
-                board.setEnPassantPosition(enPassantPosition);
-            }
+    // Replaces the published snapshot after a change, if anyone is reading snapshots
+    private void republish() {
+        if (snapshot != null) {
+            snapshot = PositionSnapshot.of(this);
+        }
+    }
 
-//            // Check if the move is en passant
-            if (isEnPassantMove(move, piece)) {
-                handleEnPassantCapture(move);
-            }
+    /**
+     * Gets the keys of the earlier positions that could still repeat, those
+     * reached since the last capture or pawn move, oldest first. The current
+     * position is not included.
+     *
+     * @return a copy of the position key history
+     */
+    public long[] getPositionHistory() {
+        return Arrays.copyOf(positionHistory, historySize);
+    }
 
-        // Check if the move puts the current player's king in check
-            if (isInCheck(teamTurn)) {
-                // If the move puts the player's king in check, it's an invalid move
-                // Roll back the move
-                board.removePiece(endPosition);
-                board.addPiece(startPosition, piece);
-                if (capturedPiece != null) {
-                    board.addPiece(endPosition, capturedPiece);
-                }
+    // Restores the earlier positions of a game set up from a snapshot
+    void setPositionHistory(long[] keys) {
+        positionHistory = Arrays.copyOf(keys, Math.max(keys.length, 16));
+        historySize = keys.length;
+        clearLegalMoves();
+        republish();
+    }
 
-                throw new InvalidMoveException("The move puts your king in check.");
-            }
+    private void recordPosition(long key) {
+        if (board.getHalfmoveClock() == 0) {
+            historySize = 0;
+            return;
+        }
+        if (historySize == positionHistory.length) {
+            // A game read from JSON may have an exactly sized, even empty, array
+            positionHistory = Arrays.copyOf(positionHistory, Math.max(historySize * 2, 16));
+        }
+        positionHistory[historySize++] = key;
+    }
 
-            // Check if the moved piece is a pawn that has reached the promotion rank
-            if (piece.getPieceType() == ChessPiece.PieceType.PAWN && (endPosition.getRow() == 1 || endPosition.getRow() == 8)) {
-                // The chosen piece type should be derived from the Move object
-                ChessPiece.PieceType chosenPieceType = move.getPromotionPiece();
-                handlePawnPromotion(endPosition, chosenPieceType);
+    /**
+     * Determines if the current position has now occurred three times with the
+     * same side to move, castling rights and en passant possibilities
+     *
+     * @return True if the game can be drawn by threefold repetition
+     */
+    public boolean isThreefoldRepetition() {
+        long key = positionKey();
+        int occurrences = 1;
+        for (int i = historySize - 1; i >= 0; i--) {
+            if (positionHistory[i] == key && ++occurrences == 3) {
+                return true;
             }
+        }
+        return false;
+    }
 
-//        System.out.println("Moving " + piece.getPieceType() + " to position: " + move);
-        // Move is valid; update the team turn
-        setTeamTurn(teamTurn == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE);
+    /**
+     * Determines if fifty moves by each side have been played without a
+     * capture or a pawn move
+     *
+     * @return True if the game can be drawn under the fifty-move rule
+     */
+    public boolean isFiftyMoveDraw() {
+        return board.getHalfmoveClock() >= FIFTY_MOVE_HALFMOVES;
+    }
 
+    /**
+     * Works out whether the team to move is in check, mated or stalemated,
+     * or the game is drawn, from one legal move generation, which later
+     * calls and makeMove reuse. Mate and stalemate take precedence over
+     * draws by repetition, the fifty-move rule or insufficient material.
+     *
+     * @return the game's status, or null if the game has already been ended
+     */
+    public Status status() {
+        if (teamTurn == null) {
+            return null;
+        }
+        boolean inCheck = board.isInCheck(teamTurn);
+        if (cachedLegalMoves().isEmpty()) {
+            return inCheck ? Status.CHECKMATE : Status.STALEMATE;
+        }
+        if (endGameConditions.insufficientMaterial(board)) {
+            return Status.DRAW_MATERIAL;
+        }
+        if (isThreefoldRepetition()) {
+            return Status.DRAW_REPETITION;
+        }
+        if (isFiftyMoveDraw()) {
+            return Status.DRAW_50;
+        }
+        return inCheck ? Status.CHECK : Status.ONGOING;
     }
 
     /**
@@ -247,10 +453,6 @@ public class ChessGame {
         return endGameConditions.stalemate(board, teamColor);
     }
 
-    private void handlePawnPromotion(ChessPosition position, ChessPiece.PieceType chosenPieceType) {
-        board.promotePawn(position, chosenPieceType);
-    }
-
     /**
      * Sets this game's chessboard with a given board
      *
@@ -258,6 +460,9 @@ public class ChessGame {
      */
     public void setBoard(ChessBoard board) {
         this.board = board;
+        historySize = 0;
+        clearLegalMoves();
+        republish();
     }
 
     /**
@@ -269,27 +474,6 @@ public class ChessGame {
         return board;
     }
 
-    private boolean isCastlingMove(ChessMove move, ChessPiece piece) {
-        return castlingHandler.princessIsInAnotherCastle(board, move, piece);
-    }
-
-    private void performCastling(ChessMove move, ChessPiece king, ChessPiece rook, ChessBoard board, ChessGame.TeamColor team) throws InvalidMoveException {
-        boolean checkChecker = isInCheck(team);
-        castlingHandler.secretService(board, move, king, rook, checkChecker);
-    }
-
-    private ChessPiece getRookForCastling(ChessMove move, ChessPiece king, ChessBoard board) {
-        return castlingHandler.targetRook(move, king, board);
-    }
-
-    private boolean isEnPassantMove(ChessMove move, ChessPiece piece) {
-        return enPassantHandler.enPassantMove(board, move, piece);
-    }
-
-    public void handleEnPassantCapture(ChessMove move) {
-        enPassantHandler.backstabber(board, move, teamTurn);
-    }
-
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
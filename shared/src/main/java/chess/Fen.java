@@ -0,0 +1,241 @@
+package chess;
+
+/**
+ * Reads and writes Forsyth-Edwards Notation, the standard one-line text form
+ * of a chess position: piece placement, side to move, castling rights, en
+ * passant target, halfmove clock and fullmove number.
+ * <p>
+ * Parsing walks the string once without splitting it, and writing fills a
+ * single presized StringBuilder.
+ */
+final class Fen {
+    // Indexed by PieceType ordinal
+    private static final String PIECE_LETTERS = "kqbnrp";
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private Fen() {
+    }
+
+    static String write(ChessGame game) {
+        return write(PositionSnapshot.of(game));
+    }
+
+    static String write(PositionSnapshot position) {
+        StringBuilder sb = new StringBuilder(90);
+        for (int row = 8; row >= 1; row--) {
+            int empty = 0;
+            for (int col = 1; col <= 8; col++) {
+                char letter = position.letter(Bitboards.square(row, col));
+                if (letter == 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    sb.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                sb.append(letter);
+            }
+            if (empty > 0) {
+                sb.append((char) ('0' + empty));
+            }
+            if (row > 1) {
+                sb.append('/');
+            }
+        }
+
+        // FEN has no way to say a game is over, so a finished game is written as white to move
+        sb.append(position.getTeamTurn() == ChessGame.TeamColor.BLACK ? " b " : " w ");
+
+        int rights = position.getCastlingRights();
+        if (rights == 0) {
+            sb.append('-');
+        } else {
+            if ((rights & ChessBoard.WHITE_KINGSIDE) != 0) sb.append('K');
+            if ((rights & ChessBoard.WHITE_QUEENSIDE) != 0) sb.append('Q');
+            if ((rights & ChessBoard.BLACK_KINGSIDE) != 0) sb.append('k');
+            if ((rights & ChessBoard.BLACK_QUEENSIDE) != 0) sb.append('q');
+        }
+
+        sb.append(' ');
+        int enPassant = position.getEnPassantSquare();
+        if (enPassant == Bitboards.NO_SQUARE) {
+            sb.append('-');
+        } else {
+            sb.append((char) ('a' + Bitboards.column(enPassant) - 1)).append(Bitboards.row(enPassant));
+        }
+
+        sb.append(' ').append(position.getHalfmoveClock()).append(' ').append(position.getFullmoveNumber());
+        return sb.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text is not a valid FEN string,
+     * or either side does not have exactly one king. The clocks may be left
+     * off, in which case they start at 0 and 1.
+     */
+    static ChessGame read(String fen) {
+        Cursor in = new Cursor(fen);
+        ChessBoard board = new ChessBoard();
+
+        int row = 8;
+        int col = 1;
+        while (!in.atFieldEnd()) {
+            char c = in.next();
+            if (c == '/') {
+                if (col != 9 || row == 1) {
+                    throw in.error("misplaced '/'");
+                }
+                row--;
+                col = 1;
+            } else if (c >= '1' && c <= '8') {
+                col += c - '0';
+            } else {
+                int type = PIECE_LETTERS.indexOf(Character.toLowerCase(c));
+                if (type < 0 || col > 8) {
+                    throw in.error("unexpected '" + c + "' in piece placement");
+                }
+                ChessGame.TeamColor color = Character.isUpperCase(c) ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+                board.addPiece(Bitboards.position(Bitboards.square(row, col)),
+                        new ChessPiece(color, TYPES[type]));
+                col++;
+            }
+            if (col > 9) {
+                throw in.error("too many squares on rank " + row);
+            }
+        }
+        if (row != 1 || col != 9) {
+            throw in.error("piece placement does not cover 64 squares");
+        }
+        // Check, mate and the move generator all assume each side has its king
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            if (Long.bitCount(board.pieces(color, ChessPiece.PieceType.KING)) != 1) {
+                throw in.error(color.name().toLowerCase() + " must have exactly one king");
+            }
+        }
+
+        in.skipSpace();
+        char side = in.next();
+        if ((side != 'w' && side != 'b') || !in.atFieldEnd()) {
+            throw in.error("side to move must be 'w' or 'b'");
+        }
+
+        in.skipSpace();
+        int rights = 0;
+        if (in.peek() == '-') {
+            in.next();
+        } else {
+            while (!in.atFieldEnd()) {
+                rights |= switch (in.next()) {
+                    case 'K' -> ChessBoard.WHITE_KINGSIDE;
+                    case 'Q' -> ChessBoard.WHITE_QUEENSIDE;
+                    case 'k' -> ChessBoard.BLACK_KINGSIDE;
+                    case 'q' -> ChessBoard.BLACK_QUEENSIDE;
+                    default -> throw in.error("unknown castling right");
+                };
+            }
+        }
+        board.setCastlingRights(rights);
+
+        in.skipSpace();
+        if (in.peek() == '-') {
+            in.next();
+        } else {
+            char file = in.next();
+            char rank = in.next();
+            if (file < 'a' || file > 'h' || (rank != '3' && rank != '6')) {
+                throw in.error("bad en passant square");
+            }
+            // Only the side that just moved can have pushed a pawn two squares
+            if (rank != ((side == 'w') ? '6' : '3')) {
+                throw in.error("en passant square on the wrong rank for the side to move");
+            }
+            // Keep the square only if a pawn can capture onto it, as makeMove does, so the
+            // position key matches the same position reached by play
+            int target = Bitboards.square(rank - '0', file - 'a' + 1);
+            ChessGame.TeamColor pusher = (rank == '3') ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+            ChessGame.TeamColor capturer = MoveGenerator.opponent(pusher);
+            if ((Bitboards.pawnAttacks(pusher, target) & board.pieces(capturer, ChessPiece.PieceType.PAWN)) != 0) {
+                board.setEnPassantPosition(Bitboards.position(target));
+            }
+        }
+
+        in.skipSpace();
+        int halfmoveClock = in.atEnd() ? 0 : in.nextNumber();
+        in.skipSpace();
+        int fullmoveNumber = in.atEnd() ? 1 : in.nextNumber();
+        in.skipSpace();
+        if (!in.atEnd()) {
+            throw in.error("unexpected text after fullmove number");
+        }
+        board.setHalfmoveClock(halfmoveClock);
+
+        ChessGame game = new ChessGame(board);
+        game.setTeamTurn(side == 'b' ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+        game.setFullmoveNumber(Math.max(fullmoveNumber, 1));
+        return game;
+    }
+
+    // Lower case, as for black
+    static char letter(ChessPiece.PieceType type) {
+        return PIECE_LETTERS.charAt(type.ordinal());
+    }
+
+    // Reads through the string one character at a time, remembering the position for error messages
+    private static final class Cursor {
+        private final String text;
+        private int index;
+
+        Cursor(String text) {
+            if (text == null) {
+                throw new IllegalArgumentException("FEN string is null");
+            }
+            this.text = text.strip();
+        }
+
+        boolean atEnd() {
+            return index >= text.length();
+        }
+
+        boolean atFieldEnd() {
+            return atEnd() || text.charAt(index) == ' ';
+        }
+
+        char peek() {
+            return atEnd() ? '\0' : text.charAt(index);
+        }
+
+        char next() {
+            if (atEnd()) {
+                throw error("unexpected end");
+            }
+            return text.charAt(index++);
+        }
+
+        void skipSpace() {
+            while (!atEnd() && text.charAt(index) == ' ') {
+                index++;
+            }
+        }
+
+        int nextNumber() {
+            int start = index;
+            int value = 0;
+            while (!atFieldEnd()) {
+                char c = text.charAt(index++);
+                if (c < '0' || c > '9' || value > 100_000) {
+                    throw error("bad move counter");
+                }
+                value = value * 10 + (c - '0');
+            }
+            if (index == start) {
+                throw error("missing move counter");
+            }
+            return value;
+        }
+
+        IllegalArgumentException error(String problem) {
+            return new IllegalArgumentException("Invalid FEN (" + problem + " at column " + (index + 1) + "): " + text);
+        }
+    }
+}
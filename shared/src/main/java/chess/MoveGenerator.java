@@ -0,0 +1,349 @@
+package chess;
+
+/**
+ * Generates moves straight from the board's bitboards into a caller-supplied
+ * {@link MoveList}, without allocating.
+ * <p>
+ * Pseudo-legal moves follow each piece's movement rules but may leave the
+ * mover's own king in check. Legal moves are produced directly: checkers and
+ * pinned pieces are found once per position and every piece's targets are
+ * masked by them, so no move has to be tried on the board.
+ */
+public final class MoveGenerator {
+    private static final long ALL_SQUARES = ~0L;
+
+    private static final ChessPiece.PieceType[] PROMOTIONS = {
+            ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT
+    };
+    private static final ChessPiece.PieceType[] NON_PAWNS = {
+            ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.ROOK,
+            ChessPiece.PieceType.QUEEN, ChessPiece.PieceType.KING
+    };
+    private static final ChessPiece.PieceType[] NON_KINGS = {
+            ChessPiece.PieceType.KNIGHT, ChessPiece.PieceType.BISHOP,
+            ChessPiece.PieceType.ROOK, ChessPiece.PieceType.QUEEN
+    };
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Adds the moves of every piece of the given team to {@code moves},
+     * including castling
+     */
+    public static void generateMoves(ChessBoard board, ChessGame.TeamColor color, MoveList moves) {
+        long pawns = board.pieces(color, ChessPiece.PieceType.PAWN);
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            generatePawnMoves(board, color, from, ALL_SQUARES, moves);
+            addEnPassant(board, color, from, moves);
+        }
+        for (ChessPiece.PieceType type : NON_PAWNS) {
+            long pieces = board.pieces(color, type);
+            while (pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                generatePieceMoves(board, color, type, from, ALL_SQUARES, moves);
+            }
+        }
+        generateCastlingMoves(board, color, moves);
+    }
+
+    /**
+     * Adds the moves of the piece standing on {@code from} to {@code moves}.
+     * Castling is left out; {@link ChessPiece#pieceMoves} adds it for kings.
+     * Does nothing if the square is empty.
+     */
+    public static void generateMoves(ChessBoard board, int from, MoveList moves) {
+        ChessPiece piece = board.getPiece(from);
+        if (piece == null) {
+            return;
+        }
+        if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
+            generatePawnMoves(board, piece.getTeamColor(), from, ALL_SQUARES, moves);
+            addEnPassant(board, piece.getTeamColor(), from, moves);
+        } else {
+            generatePieceMoves(board, piece.getTeamColor(), piece.getPieceType(), from, ALL_SQUARES, moves);
+        }
+    }
+
+    /**
+     * Adds the legal moves of every piece of the given team to {@code moves}
+     */
+    public static void generateLegalMoves(ChessBoard board, ChessGame.TeamColor color, MoveList moves) {
+        generateLegal(board, color, ALL_SQUARES, moves);
+    }
+
+    /**
+     * Adds the legal captures of the given team, including en passant and
+     * capturing promotions, to {@code moves}; the moves a quiescence search
+     * looks at
+     */
+    public static void generateLegalCaptures(ChessBoard board, ChessGame.TeamColor color, MoveList moves) {
+        generateLegal(board, color, board.pieces(opponent(color)), moves);
+    }
+
+    // Adds the legal moves landing on a square in targets, plus en passant; castling only when every square is a target
+    private static void generateLegal(ChessBoard board, ChessGame.TeamColor color, long targets, MoveList moves) {
+        int king = board.getKingSquare(color);
+        if (king == Bitboards.NO_SQUARE) {
+            // Without a king nothing can be left in check
+            int start = moves.size();
+            generateMoves(board, color, moves);
+            if (targets != ALL_SQUARES) {
+                int kept = start;
+                for (int i = start; i < moves.size(); i++) {
+                    if (PackedMove.isCapture(moves.get(i))) {
+                        moves.set(kept++, moves.get(i));
+                    }
+                }
+                moves.truncate(kept);
+            }
+            return;
+        }
+        ChessGame.TeamColor enemy = opponent(color);
+        long occupied = board.occupied();
+
+        // The king may step anywhere not attacked once it has left its square,
+        // so sliders lined up with it are not blocked by the king itself
+        long enemies = board.pieces(enemy);
+        long withoutKing = occupied ^ Bitboards.bit(king);
+        long kingTargets = Bitboards.kingAttacks(king) & ~board.pieces(color) & targets;
+        while (kingTargets != 0) {
+            int to = Long.numberOfTrailingZeros(kingTargets);
+            kingTargets &= kingTargets - 1;
+            if (board.attackersTo(to, enemy, withoutKing) == 0) {
+                int flags = ((enemies & Bitboards.bit(to)) != 0) ? PackedMove.CAPTURE : 0;
+                moves.add(PackedMove.encode(king, to, flags));
+            }
+        }
+
+        long checkers = board.attackersTo(king, enemy, occupied);
+        if (Long.bitCount(checkers) > 1) {
+            // Double check: only the king can move
+            return;
+        }
+        // With one checker every other piece must capture it or step in between
+        long checkMask = targets;
+        if (checkers != 0) {
+            checkMask &= checkers | Bitboards.between(king, Long.numberOfTrailingZeros(checkers));
+        }
+        long pinned = pinnedPieces(board, color, king);
+
+        long pawns = board.pieces(color, ChessPiece.PieceType.PAWN);
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            generatePawnMoves(board, color, from, legalTargets(king, from, checkMask, pinned), moves);
+            addLegalEnPassant(board, color, from, king, moves);
+        }
+        for (ChessPiece.PieceType type : NON_KINGS) {
+            long pieces = board.pieces(color, type);
+            while (pieces != 0) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                pieces &= pieces - 1;
+                generatePieceMoves(board, color, type, from, legalTargets(king, from, checkMask, pinned), moves);
+            }
+        }
+        if (checkers == 0 && targets == ALL_SQUARES) {
+            generateCastlingMoves(board, color, moves);
+        }
+    }
+
+    /**
+     * Adds the legal moves of the piece standing on {@code from}, including
+     * castling for a king, to {@code moves}
+     */
+    public static void generateLegalMoves(ChessBoard board, int from, MoveList moves) {
+        ChessPiece piece = board.getPiece(from);
+        if (piece == null) {
+            return;
+        }
+        // Pins and checks are worked out for the whole team, so generate it all and keep this piece's moves
+        int start = moves.size();
+        generateLegalMoves(board, piece.getTeamColor(), moves);
+        int kept = start;
+        for (int i = start; i < moves.size(); i++) {
+            int move = moves.get(i);
+            if (PackedMove.from(move) == from) {
+                moves.set(kept++, move);
+            }
+        }
+        moves.truncate(kept);
+    }
+
+    /**
+     * @return whether the given team has at least one legal move
+     */
+    public static boolean hasLegalMove(ChessBoard board, ChessGame.TeamColor color) {
+        MoveList moves = new MoveList();
+        generateLegalMoves(board, color, moves);
+        return !moves.isEmpty();
+    }
+
+    /**
+     * @return the given team's pieces standing alone between their king and an
+     * enemy rook, bishop or queen, which may only move along that line
+     */
+    static long pinnedPieces(ChessBoard board, ChessGame.TeamColor color, int king) {
+        ChessGame.TeamColor enemy = opponent(color);
+        long queens = board.pieces(enemy, ChessPiece.PieceType.QUEEN);
+        long snipers = (Bitboards.rookAttacks(king, 0L) & (board.pieces(enemy, ChessPiece.PieceType.ROOK) | queens))
+                | (Bitboards.bishopAttacks(king, 0L) & (board.pieces(enemy, ChessPiece.PieceType.BISHOP) | queens));
+        long occupied = board.occupied();
+        long own = board.pieces(color);
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Bitboards.between(king, sniper) & occupied;
+            if (Long.bitCount(blockers) == 1 && (blockers & own) != 0) {
+                pinned |= blockers;
+            }
+        }
+        return pinned;
+    }
+
+    // A pinned piece keeps only the targets on the line through its king and itself
+    private static long legalTargets(int king, int from, long checkMask, long pinned) {
+        if ((pinned & Bitboards.bit(from)) != 0) {
+            return checkMask & Bitboards.line(king, from);
+        }
+        return checkMask;
+    }
+
+    /**
+     * Adds castling moves whose right is still held, whose path between king
+     * and rook is empty, and where the king does not start in, pass through
+     * or land on an attacked square.
+     */
+    static void generateCastlingMoves(ChessBoard board, ChessGame.TeamColor color, MoveList moves) {
+        boolean white = color == ChessGame.TeamColor.WHITE;
+        int rights = board.getCastlingRights();
+        int kingside = white ? ChessBoard.WHITE_KINGSIDE : ChessBoard.BLACK_KINGSIDE;
+        int queenside = white ? ChessBoard.WHITE_QUEENSIDE : ChessBoard.BLACK_QUEENSIDE;
+        if ((rights & (kingside | queenside)) == 0) {
+            return;
+        }
+        int row = white ? 1 : 8;
+        int kingSquare = Bitboards.square(row, 5);
+        if ((board.pieces(color, ChessPiece.PieceType.KING) & Bitboards.bit(kingSquare)) == 0) {
+            return;
+        }
+        ChessGame.TeamColor enemy = opponent(color);
+        if (board.isSquareAttacked(kingSquare, enemy)) {
+            return;
+        }
+        long rooks = board.pieces(color, ChessPiece.PieceType.ROOK);
+        long occupied = board.occupied();
+        if ((rights & kingside) != 0 && (rooks & Bitboards.bit(kingSquare + 3)) != 0
+                && (occupied & (Bitboards.bit(kingSquare + 1) | Bitboards.bit(kingSquare + 2))) == 0
+                && !board.isSquareAttacked(kingSquare + 1, enemy) && !board.isSquareAttacked(kingSquare + 2, enemy)) {
+            moves.add(PackedMove.encode(kingSquare, kingSquare + 2, PackedMove.CASTLE));
+        }
+        long queensidePath = Bitboards.bit(kingSquare - 1) | Bitboards.bit(kingSquare - 2) | Bitboards.bit(kingSquare - 3);
+        if ((rights & queenside) != 0 && (rooks & Bitboards.bit(kingSquare - 4)) != 0
+                && (occupied & queensidePath) == 0
+                && !board.isSquareAttacked(kingSquare - 1, enemy) && !board.isSquareAttacked(kingSquare - 2, enemy)) {
+            moves.add(PackedMove.encode(kingSquare, kingSquare - 2, PackedMove.CASTLE));
+        }
+    }
+
+    private static void generatePieceMoves(ChessBoard board, ChessGame.TeamColor color, ChessPiece.PieceType type,
+                                           int from, long mask, MoveList moves) {
+        long enemies = board.pieces(opponent(color));
+        long targets = Bitboards.attacks(type, from, board.occupied()) & ~board.pieces(color) & mask;
+        while (targets != 0) {
+            int to = Long.numberOfTrailingZeros(targets);
+            targets &= targets - 1;
+            int flags = ((enemies & Bitboards.bit(to)) != 0) ? PackedMove.CAPTURE : 0;
+            moves.add(PackedMove.encode(from, to, flags));
+        }
+    }
+
+    // Pushes and ordinary captures landing in mask; en passant is added separately
+    private static void generatePawnMoves(ChessBoard board, ChessGame.TeamColor color, int from, long mask,
+                                          MoveList moves) {
+        boolean white = color == ChessGame.TeamColor.WHITE;
+        int forward = white ? 8 : -8;
+        long startRank = white ? Bitboards.RANK_2 : Bitboards.RANK_7;
+        long promotionRank = white ? Bitboards.RANK_8 : Bitboards.RANK_1;
+        long empty = ~board.occupied();
+
+        // Pushes
+        int oneStep = from + forward;
+        if (oneStep >= 0 && oneStep < 64 && (empty & Bitboards.bit(oneStep)) != 0) {
+            if ((mask & Bitboards.bit(oneStep)) != 0) {
+                addPawnMove(from, oneStep, 0, promotionRank, moves);
+            }
+            int twoSteps = oneStep + forward;
+            if ((startRank & Bitboards.bit(from)) != 0 && (empty & mask & Bitboards.bit(twoSteps)) != 0) {
+                moves.add(PackedMove.encode(from, twoSteps, PackedMove.DOUBLE_PUSH));
+            }
+        }
+
+        // Captures
+        long captures = Bitboards.pawnAttacks(color, from) & board.pieces(opponent(color)) & mask;
+        while (captures != 0) {
+            int to = Long.numberOfTrailingZeros(captures);
+            captures &= captures - 1;
+            addPawnMove(from, to, PackedMove.CAPTURE, promotionRank, moves);
+        }
+    }
+
+    // En passant onto the square the enemy pawn skipped over
+    private static void addEnPassant(ChessBoard board, ChessGame.TeamColor color, int from, MoveList moves) {
+        int target = enPassantSquare(board, color);
+        if (target != Bitboards.NO_SQUARE && (Bitboards.pawnAttacks(color, from) & Bitboards.bit(target)) != 0) {
+            moves.add(PackedMove.encode(from, target, PackedMove.CAPTURE | PackedMove.EN_PASSANT));
+        }
+    }
+
+    // En passant lifts two pawns off one rank, which can uncover an attack the pin test does not see,
+    // so replay the capture on the occupancy and check that nothing but the captured pawn hits the king
+    private static void addLegalEnPassant(ChessBoard board, ChessGame.TeamColor color, int from, int king,
+                                          MoveList moves) {
+        int target = enPassantSquare(board, color);
+        if (target == Bitboards.NO_SQUARE || (Bitboards.pawnAttacks(color, from) & Bitboards.bit(target)) == 0) {
+            return;
+        }
+        int victim = target + ((color == ChessGame.TeamColor.WHITE) ? -8 : 8);
+        long occupied = (board.occupied() ^ Bitboards.bit(from) ^ Bitboards.bit(victim)) | Bitboards.bit(target);
+        if ((board.attackersTo(king, opponent(color), occupied) & ~Bitboards.bit(victim)) == 0) {
+            moves.add(PackedMove.encode(from, target, PackedMove.CAPTURE | PackedMove.EN_PASSANT));
+        }
+    }
+
+    private static void addPawnMove(int from, int to, int flags, long promotionRank, MoveList moves) {
+        if ((promotionRank & Bitboards.bit(to)) != 0) {
+            for (ChessPiece.PieceType promotion : PROMOTIONS) {
+                moves.add(PackedMove.encode(from, to, promotion, flags));
+            }
+        } else {
+            moves.add(PackedMove.encode(from, to, flags));
+        }
+    }
+
+    /**
+     * @return the en passant target square usable by the given team, or NO_SQUARE
+     */
+    private static int enPassantSquare(ChessBoard board, ChessGame.TeamColor color) {
+        int square = board.getEnPassantSquare();
+        if (square == Bitboards.NO_SQUARE) {
+            return Bitboards.NO_SQUARE;
+        }
+        // The pawn that can be captured sits one rank behind the target square, from the capturer's view
+        int victim = square + ((color == ChessGame.TeamColor.WHITE) ? -8 : 8);
+        if (victim < 0 || victim > 63
+                || (board.pieces(opponent(color), ChessPiece.PieceType.PAWN) & Bitboards.bit(victim)) == 0) {
+            return Bitboards.NO_SQUARE;
+        }
+        return square;
+    }
+
+    static ChessGame.TeamColor opponent(ChessGame.TeamColor color) {
+        return (color == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
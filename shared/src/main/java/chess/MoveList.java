@@ -0,0 +1,81 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A reusable list of {@link PackedMove} encoded moves.
+ * <p>
+ * Callers keep one instance around and {@link #clear()} it between uses, so
+ * generating moves does not allocate.
+ */
+public class MoveList {
+    // No legal chess position has more than 218 moves. Boards set up by hand can hold extra
+    // pieces and go past that, so the list grows rather than overflow
+    public static final int CAPACITY = 256;
+
+    private int[] moves;
+    private int size;
+
+    public MoveList() {
+        this.moves = new int[CAPACITY];
+    }
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public void set(int index, int move) {
+        moves[index] = move;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Shrinks the list to its first {@code newSize} moves
+     */
+    public void truncate(int newSize) {
+        size = newSize;
+    }
+
+    /**
+     * @return the packed move matching the given ChessMove, or {@link PackedMove#NONE}
+     */
+    public int find(ChessMove chessMove) {
+        for (int i = 0; i < size; i++) {
+            if (PackedMove.matches(moves[i], chessMove)) {
+                return moves[i];
+            }
+        }
+        return PackedMove.NONE;
+    }
+
+    /**
+     * Converts the list into ChessMove objects for the public API
+     */
+    public List<ChessMove> toChessMoves() {
+        List<ChessMove> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(PackedMove.toChessMove(moves[i]));
+        }
+        return result;
+    }
+}
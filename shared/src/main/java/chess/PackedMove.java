@@ -0,0 +1,85 @@
+package chess;
+
+/**
+ * Encodes a move into a single {@code int} so move lists can be kept in
+ * primitive arrays.
+ * <p>
+ * Layout: bits 0-5 start square, bits 6-11 end square, bits 12-14 promotion
+ * piece (0 for none, otherwise {@code PieceType.ordinal() + 1}) and the
+ * remaining bits are flags describing how the move is played.
+ */
+public final class PackedMove {
+    public static final int NONE = 0;
+
+    public static final int CAPTURE = 1 << 15;
+    public static final int DOUBLE_PUSH = 1 << 16;
+    public static final int EN_PASSANT = 1 << 17;
+    public static final int CASTLE = 1 << 18;
+
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private PackedMove() {
+    }
+
+    public static int encode(int from, int to, int flags) {
+        return from | (to << 6) | flags;
+    }
+
+    public static int encode(int from, int to, ChessPiece.PieceType promotion, int flags) {
+        int promotionBits = (promotion == null) ? 0 : (promotion.ordinal() + 1) << 12;
+        return from | (to << 6) | promotionBits | flags;
+    }
+
+    public static int from(int move) {
+        return move & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    /**
+     * @return the piece a pawn is promoted to, or null if the move is not a promotion
+     */
+    public static ChessPiece.PieceType promotion(int move) {
+        int bits = (move >>> 12) & 0x7;
+        return (bits == 0) ? null : TYPES[bits - 1];
+    }
+
+    public static boolean isPromotion(int move) {
+        return (move & (0x7 << 12)) != 0;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    public static boolean isDoublePush(int move) {
+        return (move & DOUBLE_PUSH) != 0;
+    }
+
+    public static boolean isEnPassant(int move) {
+        return (move & EN_PASSANT) != 0;
+    }
+
+    public static boolean isCastle(int move) {
+        return (move & CASTLE) != 0;
+    }
+
+    /**
+     * @return whether the packed move and the ChessMove describe the same
+     * start square, end square and promotion
+     */
+    public static boolean matches(int move, ChessMove chessMove) {
+        return from(move) == Bitboards.square(chessMove.getStartPosition())
+                && to(move) == Bitboards.square(chessMove.getEndPosition())
+                && promotion(move) == chessMove.getPromotionPiece();
+    }
+
+    /**
+     * Converts a packed move into the public ChessMove type
+     */
+    public static ChessMove toChessMove(int move) {
+        return new ChessMove(Bitboards.position(from(move)), Bitboards.position(to(move)), promotion(move));
+    }
+}
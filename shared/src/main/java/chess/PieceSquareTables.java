@@ -0,0 +1,172 @@
+package chess;
+
+/**
+ * Material and placement values for each piece on each square, with one set
+ * for the middlegame and one for the endgame, plus how much each piece
+ * counts toward the game phase.
+ * <p>
+ * Values are in centipawns with white's pieces positive and black's
+ * negative, so {@link ChessBoard} keeps running totals for the whole
+ * position by adding a value as a piece lands and subtracting it as the
+ * piece leaves, the same way it keeps its Zobrist key. An evaluator blends
+ * the two totals by phase: the full middlegame score with every minor and
+ * major piece on the board, sliding to the endgame score as they come off.
+ */
+public final class PieceSquareTables {
+    /** Phase with all the starting pieces on the board */
+    public static final int MAX_PHASE = 24;
+
+    // Indexed by PieceType ordinal: KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN
+    private static final int[] MIDGAME_VALUES = {0, 900, 330, 320, 480, 90};
+    private static final int[] ENDGAME_VALUES = {0, 940, 310, 290, 520, 120};
+    private static final int[] PHASE_WEIGHTS = {0, 4, 1, 1, 2, 0};
+
+    // Placement bonuses drawn from white's side with rank 8 on the top line, indexed like the values
+    private static final int[][] MIDGAME_PLACEMENT = {
+            { // King: stay behind the pawns
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -30, -40, -40, -50, -50, -40, -40, -30,
+                    -20, -30, -30, -40, -40, -30, -30, -20,
+                    -10, -20, -20, -20, -20, -20, -20, -10,
+                    20, 20, 0, 0, 0, 0, 20, 20,
+                    20, 30, 10, 0, 0, 10, 30, 20},
+            { // Queen
+                    -20, -10, -10, -5, -5, -10, -10, -20,
+                    -10, 0, 0, 0, 0, 0, 0, -10,
+                    -10, 0, 5, 5, 5, 5, 0, -10,
+                    -5, 0, 5, 5, 5, 5, 0, -5,
+                    0, 0, 5, 5, 5, 5, 0, -5,
+                    -10, 5, 5, 5, 5, 5, 0, -10,
+                    -10, 0, 5, 0, 0, 0, 0, -10,
+                    -20, -10, -10, -5, -5, -10, -10, -20},
+            { // Bishop
+                    -20, -10, -10, -10, -10, -10, -10, -20,
+                    -10, 0, 0, 0, 0, 0, 0, -10,
+                    -10, 0, 5, 10, 10, 5, 0, -10,
+                    -10, 5, 5, 10, 10, 5, 5, -10,
+                    -10, 0, 10, 10, 10, 10, 0, -10,
+                    -10, 10, 10, 10, 10, 10, 10, -10,
+                    -10, 5, 0, 0, 0, 0, 5, -10,
+                    -20, -10, -10, -10, -10, -10, -10, -20},
+            { // Knight
+                    -50, -40, -30, -30, -30, -30, -40, -50,
+                    -40, -20, 0, 0, 0, 0, -20, -40,
+                    -30, 0, 10, 15, 15, 10, 0, -30,
+                    -30, 5, 15, 20, 20, 15, 5, -30,
+                    -30, 0, 15, 20, 20, 15, 0, -30,
+                    -30, 5, 10, 15, 15, 10, 5, -30,
+                    -40, -20, 0, 5, 5, 0, -20, -40,
+                    -50, -40, -30, -30, -30, -30, -40, -50},
+            { // Rook
+                    0, 0, 0, 0, 0, 0, 0, 0,
+                    5, 10, 10, 10, 10, 10, 10, 5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    -5, 0, 0, 0, 0, 0, 0, -5,
+                    0, 0, 0, 5, 5, 0, 0, 0},
+            { // Pawn
+                    0, 0, 0, 0, 0, 0, 0, 0,
+                    50, 50, 50, 50, 50, 50, 50, 50,
+                    10, 10, 20, 30, 30, 20, 10, 10,
+                    5, 5, 10, 25, 25, 10, 5, 5,
+                    0, 0, 0, 20, 20, 0, 0, 0,
+                    5, -5, -10, 0, 0, -10, -5, 5,
+                    5, 10, 10, -20, -20, 10, 10, 5,
+                    0, 0, 0, 0, 0, 0, 0, 0}
+    };
+
+    // In the endgame the king comes to the center and passed pawns matter more
+    private static final int[] ENDGAME_KING = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50};
+    private static final int[] ENDGAME_PAWN = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            90, 90, 90, 90, 90, 90, 90, 90,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            30, 30, 30, 30, 30, 30, 30, 30,
+            15, 15, 15, 15, 15, 15, 15, 15,
+            5, 5, 5, 5, 5, 5, 5, 5,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0};
+
+    // Signed totals for each piece on each square, indexed by Bitboards.pieceIndex
+    private static final int[][] MIDGAME = new int[12][64];
+    private static final int[][] ENDGAME = new int[12][64];
+
+    static {
+        for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+            int t = type.ordinal();
+            int[] endgamePlacement = switch (type) {
+                case KING -> ENDGAME_KING;
+                case PAWN -> ENDGAME_PAWN;
+                default -> MIDGAME_PLACEMENT[t];
+            };
+            int white = Bitboards.pieceIndex(ChessGame.TeamColor.WHITE, type);
+            int black = Bitboards.pieceIndex(ChessGame.TeamColor.BLACK, type);
+            for (int sq = 0; sq < 64; sq++) {
+                // The tables list rank 8 first, so white reads them flipped and black as written
+                MIDGAME[white][sq] = MIDGAME_VALUES[t] + MIDGAME_PLACEMENT[t][sq ^ 56];
+                MIDGAME[black][sq] = -(MIDGAME_VALUES[t] + MIDGAME_PLACEMENT[t][sq]);
+                ENDGAME[white][sq] = ENDGAME_VALUES[t] + endgamePlacement[sq ^ 56];
+                ENDGAME[black][sq] = -(ENDGAME_VALUES[t] + endgamePlacement[sq]);
+            }
+        }
+    }
+
+    private PieceSquareTables() {
+    }
+
+    /**
+     * @return the middlegame value of the piece on the square, positive for white
+     */
+    public static int midgame(ChessGame.TeamColor color, ChessPiece.PieceType type, int square) {
+        return MIDGAME[Bitboards.pieceIndex(color, type)][square];
+    }
+
+    /**
+     * @return the endgame value of the piece on the square, positive for white
+     */
+    public static int endgame(ChessGame.TeamColor color, ChessPiece.PieceType type, int square) {
+        return ENDGAME[Bitboards.pieceIndex(color, type)][square];
+    }
+
+    // By Bitboards.pieceIndex, for the board's hot paths
+    static int midgame(int pieceIndex, int square) {
+        return MIDGAME[pieceIndex][square];
+    }
+
+    static int endgame(int pieceIndex, int square) {
+        return ENDGAME[pieceIndex][square];
+    }
+
+    static int phase(int pieceIndex) {
+        return PHASE_WEIGHTS[pieceIndex % 6];
+    }
+
+    /**
+     * @return how much the piece counts toward the game phase
+     */
+    public static int phase(ChessPiece.PieceType type) {
+        return PHASE_WEIGHTS[type.ordinal()];
+    }
+
+    /**
+     * Blends middlegame and endgame scores by phase
+     *
+     * @param phase the board's phase, capped at {@link #MAX_PHASE} since promotions can push it higher
+     */
+    public static int taper(int midgame, int endgame, int phase) {
+        int p = Math.min(phase, MAX_PHASE);
+        return (midgame * p + endgame * (MAX_PHASE - p)) / MAX_PHASE;
+    }
+}
@@ -0,0 +1,191 @@
+package chess;
+
+import com.google.gson.annotations.JsonAdapter;
+
+import java.util.Arrays;
+
+/**
+ * An unchangeable copy of a game's position: piece placement, side to move,
+ * castling rights, en passant square, move counters and the earlier
+ * positions that count towards repetition.
+ * <p>
+ * A {@link ChessGame} publishes a new snapshot after every change, so other
+ * threads can read the latest position through {@link ChessGame#snapshot()}
+ * without locking the game or copying it, and never see a move half made.
+ * Pieces are packed one byte per square. A snapshot is written to JSON in
+ * the same form as a game, so it can be sent or listed in place of one and
+ * read back as either.
+ */
+@JsonAdapter(PositionSnapshotAdapter.class)
+public final class PositionSnapshot {
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+    private static final ChessGame.TeamColor[] COLORS = ChessGame.TeamColor.values();
+    private static final byte EMPTY = -1;
+
+    // Bitboards.pieceIndex of the piece on each square, or EMPTY
+    private final byte[] squares;
+    private final long key;
+    private final ChessGame.TeamColor teamTurn;
+    private final int castlingRights;
+    private final int enPassantSquare;
+    private final int halfmoveClock;
+    private final int fullmoveNumber;
+    // Keys of the earlier positions that could still repeat, oldest first
+    private final long[] history;
+
+    private PositionSnapshot(byte[] squares, long key, ChessGame.TeamColor teamTurn, int castlingRights,
+                             int enPassantSquare, int halfmoveClock, int fullmoveNumber, long[] history) {
+        this.squares = squares;
+        this.key = key;
+        this.teamTurn = teamTurn;
+        this.castlingRights = castlingRights;
+        this.enPassantSquare = enPassantSquare;
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        this.history = history;
+    }
+
+    static PositionSnapshot of(ChessGame game) {
+        ChessBoard board = game.getBoard();
+        byte[] squares = new byte[64];
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = board.getPiece(square);
+            squares[square] = (piece == null) ? EMPTY
+                    : (byte) Bitboards.pieceIndex(piece.getTeamColor(), piece.getPieceType());
+        }
+        return new PositionSnapshot(squares, game.positionKey(), game.getTeamTurn(), board.getCastlingRights(),
+                board.getEnPassantSquare(), board.getHalfmoveClock(), game.getFullmoveNumber(),
+                game.getPositionHistory());
+    }
+
+    /**
+     * @return a new piece matching the one on the square, or null if it is empty
+     */
+    public ChessPiece getPiece(ChessPosition position) {
+        return getPiece(Bitboards.square(position));
+    }
+
+    /**
+     * @return a new piece matching the one on a square index (0 = a1, 63 = h8), or null
+     */
+    public ChessPiece getPiece(int square) {
+        int index = squares[square];
+        return (index == EMPTY) ? null : new ChessPiece(COLORS[index / 6], TYPES[index % 6]);
+    }
+
+    /**
+     * @return the position's Zobrist key, as {@link ChessGame#positionKey()} gave it
+     */
+    public long positionKey() {
+        return key;
+    }
+
+    /**
+     * @return the team to move, or null if the game was over
+     */
+    public ChessGame.TeamColor getTeamTurn() {
+        return teamTurn;
+    }
+
+    public int getCastlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * @return the square a pawn could capture en passant onto, or {@link Bitboards#NO_SQUARE}
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * Gets the keys of the earlier positions that could still repeat, as
+     * {@link ChessGame#getPositionHistory()} gave them
+     *
+     * @return a copy of the position key history
+     */
+    public long[] getPositionHistory() {
+        return history.clone();
+    }
+
+    /**
+     * @return the position in Forsyth-Edwards Notation
+     */
+    public String toFen() {
+        return Fen.write(this);
+    }
+
+    /**
+     * Sets up a separate game at this position, including the earlier
+     * positions that count towards repetition, for callers that need to
+     * play moves. Readers that only look at the position should use the
+     * snapshot itself.
+     *
+     * @return a new game
+     */
+    public ChessGame toGame() {
+        ChessBoard board = new ChessBoard();
+        for (int square = 0; square < 64; square++) {
+            ChessPiece piece = getPiece(square);
+            if (piece != null) {
+                board.addPiece(Bitboards.position(square), piece);
+            }
+        }
+        board.setCastlingRights(castlingRights);
+        board.setEnPassantPosition((enPassantSquare == Bitboards.NO_SQUARE) ? null : Bitboards.position(enPassantSquare));
+        board.setHalfmoveClock(halfmoveClock);
+        ChessGame game = new ChessGame(board);
+        game.setPositionHistory(history);
+        game.setFullmoveNumber(fullmoveNumber);
+        game.setTeamTurn(teamTurn);
+        return game;
+    }
+
+    // Bitboards.pieceIndex of the piece on a square, or -1 if it is empty
+    int pieceIndex(int square) {
+        return squares[square];
+    }
+
+    // The history itself, for writers that only read it
+    long[] history() {
+        return history;
+    }
+
+    // The piece letter on a square as FEN writes it, or 0 if it is empty
+    char letter(int square) {
+        int index = squares[square];
+        if (index == EMPTY) {
+            return 0;
+        }
+        char c = Fen.letter(TYPES[index % 6]);
+        return (index < 6) ? Character.toUpperCase(c) : c;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PositionSnapshot that = (PositionSnapshot) o;
+        return key == that.key && teamTurn == that.teamTurn && castlingRights == that.castlingRights
+                && enPassantSquare == that.enPassantSquare && halfmoveClock == that.halfmoveClock
+                && fullmoveNumber == that.fullmoveNumber && Arrays.equals(squares, that.squares);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(key) * 31 + halfmoveClock * 7 + fullmoveNumber;
+    }
+
+    @Override
+    public String toString() {
+        return toFen();
+    }
+}
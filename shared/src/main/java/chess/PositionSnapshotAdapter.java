@@ -0,0 +1,91 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes a snapshot as the JSON a {@link ChessGame} saves as, so a message or
+ * game list built on a snapshot looks the same to clients as one built on a
+ * game, without a game being set up to write it. Reading goes through the
+ * game's own form and takes a snapshot of the result.
+ */
+class PositionSnapshotAdapter implements TypeAdapterFactory {
+    // Only ever written, never handed out, so one piece per colour and type serves every square
+    private static final ChessPiece[] PIECES = new ChessPiece[12];
+
+    static {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            for (ChessPiece.PieceType type : ChessPiece.PieceType.values()) {
+                PIECES[Bitboards.pieceIndex(color, type)] = new ChessPiece(color, type);
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (type.getRawType() != PositionSnapshot.class) {
+            return null;
+        }
+        TypeAdapter<ChessPiece> pieces = gson.getAdapter(ChessPiece.class);
+        TypeAdapter<ChessGame.TeamColor> colors = gson.getAdapter(ChessGame.TeamColor.class);
+        TypeAdapter<ChessGame> games = gson.getAdapter(ChessGame.class);
+        return (TypeAdapter<T>) new TypeAdapter<PositionSnapshot>() {
+            @Override
+            public void write(JsonWriter out, PositionSnapshot position) throws IOException {
+                if (position == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginObject();
+                // The board in the form ChessBoardAdapter writes
+                out.name("board").beginObject();
+                out.name("board").beginArray();
+                for (int row = 1; row <= 8; row++) {
+                    out.beginArray();
+                    for (int col = 1; col <= 8; col++) {
+                        int index = position.pieceIndex(Bitboards.square(row, col));
+                        pieces.write(out, (index < 0) ? null : PIECES[index]);
+                    }
+                    out.endArray();
+                }
+                out.endArray();
+                out.name("castlingRights").value(position.getCastlingRights());
+                out.name("enPassantSquare").value(position.getEnPassantSquare());
+                out.name("halfmoveClock").value(position.getHalfmoveClock());
+                out.endObject();
+
+                ChessGame.TeamColor teamTurn = position.getTeamTurn();
+                out.name("teamTurn");
+                colors.write(out, teamTurn);
+                out.name("oppositeTeamColor");
+                colors.write(out, (teamTurn == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE);
+                long[] history = position.history();
+                out.name("positionHistory").beginArray();
+                for (long key : history) {
+                    out.value(key);
+                }
+                out.endArray();
+                out.name("historySize").value(history.length);
+                out.name("fullmoveNumber").value(position.getFullmoveNumber());
+                out.endObject();
+            }
+
+            @Override
+            public PositionSnapshot read(JsonReader in) throws IOException {
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                return games.read(in).snapshot();
+            }
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package chess;
+
+/**
+ * Random 64-bit keys for Zobrist hashing of positions.
+ * <p>
+ * A position's key is the XOR of the key for every (piece, square) pair on
+ * the board plus keys for the castling rights, the en passant file and the
+ * side to move. Adding or removing a piece XORs a single key in or out, so
+ * {@link ChessBoard} keeps its key up to date as pieces change.
+ * <p>
+ * The keys come from a fixed seed, so a position has the same key in every
+ * process and keys can be stored alongside saved games.
+ */
+public final class Zobrist {
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+    private static final long[] CASTLING = new long[ChessBoard.ALL_CASTLING + 1];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        long state = SEED;
+        for (long[] keys : PIECE_SQUARE) {
+            for (int sq = 0; sq < 64; sq++) {
+                state += SEED;
+                keys[sq] = mix(state);
+            }
+        }
+        // Each right gets its own key and a set of rights is the XOR of its members,
+        // so no rights at all hashes to 0
+        long[] rightKeys = new long[4];
+        for (int i = 0; i < rightKeys.length; i++) {
+            state += SEED;
+            rightKeys[i] = mix(state);
+        }
+        for (int rights = 0; rights < CASTLING.length; rights++) {
+            for (int i = 0; i < rightKeys.length; i++) {
+                if ((rights & (1 << i)) != 0) {
+                    CASTLING[rights] ^= rightKeys[i];
+                }
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            state += SEED;
+            EN_PASSANT_FILE[file] = mix(state);
+        }
+        state += SEED;
+        BLACK_TO_MOVE = mix(state);
+    }
+
+    private Zobrist() {
+    }
+
+    // SplitMix64 finalizer; spreads consecutive counter values over all 64 bits
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @return the key for a piece of the given color and type standing on a square
+     */
+    public static long piece(ChessGame.TeamColor color, ChessPiece.PieceType type, int square) {
+        return PIECE_SQUARE[Bitboards.pieceIndex(color, type)][square];
+    }
+
+    /**
+     * @return the key for a set of castling rights, 0 when none are held
+     */
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    /**
+     * @return the key for an en passant target square, 0 for {@link Bitboards#NO_SQUARE}
+     */
+    public static long enPassant(int square) {
+        return (square == Bitboards.NO_SQUARE) ? 0L : EN_PASSANT_FILE[square & 7];
+    }
+
+    /**
+     * @return the key XORed in when black is to move, 0 otherwise
+     */
+    public static long sideToMove(ChessGame.TeamColor color) {
+        return (color == ChessGame.TeamColor.BLACK) ? BLACK_TO_MOVE : 0L;
+    }
+}
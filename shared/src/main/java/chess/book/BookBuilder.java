@@ -0,0 +1,159 @@
+package chess.book;
+
+import chess.Bitboards;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import chess.MoveGenerator;
+import chess.MoveList;
+import chess.PackedMove;
+import chess.notation.Pgn;
+import chess.notation.San;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the opening moves of many games and writes them out as an
+ * {@link OpeningBook} file.
+ * <p>
+ * Each move played in the first plies of a game adds to the weight of that
+ * move in that position: two for a game the mover went on to win, one for a
+ * draw or unknown result, nothing for a loss. Moves seen in fewer games than
+ * the minimum, or never in a game the mover did not lose, are left out.
+ */
+public class BookBuilder {
+    private final int maxPlies;
+    private final int minGames;
+    // Position key, then packed move, then {games, weight}
+    private final Map<Long, Map<Integer, int[]>> entries = new HashMap<>();
+    private final MoveList moves = new MoveList();
+    private int games;
+    private int rejected;
+
+    /**
+     * @param maxPlies how many plies of each game to take moves from
+     * @param minGames fewest games a move must appear in to be kept
+     */
+    public BookBuilder(int maxPlies, int minGames) {
+        if (maxPlies < 1 || minGames < 1) {
+            throw new IllegalArgumentException("Plies and minimum games must be positive");
+        }
+        this.maxPlies = maxPlies;
+        this.minGames = minGames;
+    }
+
+    /**
+     * Adds every game in a PGN source
+     *
+     * @throws IllegalArgumentException if the text is not well-formed PGN
+     */
+    public void addPgn(Reader in) throws IOException {
+        Pgn.read(in, this::addGame);
+    }
+
+    /**
+     * Adds the opening moves of one game. A game that starts from a set-up
+     * position uses its FEN tag; moves after the first one that cannot be
+     * read or played are ignored.
+     */
+    public void addGame(Pgn.Game game) {
+        ChessGame board;
+        try {
+            String fen = game.tags().get("FEN");
+            board = (fen == null) ? new ChessGame() : ChessGame.fromFen(fen);
+        } catch (IllegalArgumentException e) {
+            rejected++;
+            return;
+        }
+        games++;
+        int plies = Math.min(maxPlies, game.moves().size());
+        for (int ply = 0; ply < plies; ply++) {
+            ChessGame.TeamColor mover = board.getTeamTurn();
+            long key = board.positionKey();
+            try {
+                ChessMove move = San.parse(board, game.moves().get(ply), moves);
+                moves.clear();
+                MoveGenerator.generateLegalMoves(board.getBoard(), Bitboards.square(move.getStartPosition()), moves);
+                record(key, moves.find(move), weight(game.result(), mover));
+                board.makeMove(move);
+            } catch (IllegalArgumentException | InvalidMoveException e) {
+                rejected++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of games added so far
+     */
+    public int games() {
+        return games;
+    }
+
+    /**
+     * @return the number of games that could not be set up or replayed in full
+     */
+    public int rejected() {
+        return rejected;
+    }
+
+    /**
+     * Writes the book file, replacing any file already there
+     *
+     * @return the number of (position, move) records written
+     */
+    public int write(Path file) throws IOException {
+        List<long[]> records = new ArrayList<>();
+        for (Map.Entry<Long, Map<Integer, int[]>> position : entries.entrySet()) {
+            for (Map.Entry<Integer, int[]> move : position.getValue().entrySet()) {
+                int[] counts = move.getValue();
+                if (counts[0] >= minGames && counts[1] > 0) {
+                    records.add(new long[]{position.getKey(), move.getKey(), counts[1]});
+                }
+            }
+        }
+        // By key as the book's binary search expects, then by weight from highest
+        records.sort((a, b) -> {
+            int byKey = Long.compareUnsigned(a[0], b[0]);
+            return (byKey != 0) ? byKey : Long.compare(b[2], a[2]);
+        });
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeLong(OpeningBook.MAGIC);
+            out.writeLong(records.size());
+            for (long[] record : records) {
+                out.writeLong(record[0]);
+                out.writeInt((int) record[1]);
+                out.writeInt((int) record[2]);
+            }
+        }
+        return records.size();
+    }
+
+    private void record(long key, int move, int weight) {
+        if (move == PackedMove.NONE) {
+            throw new IllegalArgumentException("Not a legal move");
+        }
+        int[] counts = entries.computeIfAbsent(key, k -> new HashMap<>(4)).computeIfAbsent(move, m -> new int[2]);
+        counts[0]++;
+        counts[1] = (int) Math.min(Integer.MAX_VALUE, (long) counts[1] + weight);
+    }
+
+    private static int weight(String result, ChessGame.TeamColor mover) {
+        String win = (mover == ChessGame.TeamColor.WHITE) ? "1-0" : "0-1";
+        String loss = (mover == ChessGame.TeamColor.WHITE) ? "0-1" : "1-0";
+        if (result.equals(win)) {
+            return 2;
+        }
+        return result.equals(loss) ? 0 : 1;
+    }
+}
@@ -0,0 +1,52 @@
+package chess.book;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line opening book builder.
+ * <pre>
+ *   BookMain output.bin input.pgn... [--plies n] [--min-games n]
+ *       reads every game in the PGN files and writes a book of the moves
+ *       played in their first n plies (default 16), keeping moves seen in at
+ *       least --min-games games (default 2)
+ * </pre>
+ */
+public class BookMain {
+    private static final int DEFAULT_PLIES = 16;
+    private static final int DEFAULT_MIN_GAMES = 2;
+
+    public static void main(String[] args) throws IOException {
+        int plies = DEFAULT_PLIES;
+        int minGames = DEFAULT_MIN_GAMES;
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--plies" -> plies = Integer.parseInt(args[++i]);
+                case "--min-games" -> minGames = Integer.parseInt(args[++i]);
+                default -> paths.add(Path.of(args[i]));
+            }
+        }
+        if (paths.size() < 2) {
+            System.err.println("usage: BookMain output.bin input.pgn... [--plies n] [--min-games n]");
+            System.exit(2);
+        }
+
+        BookBuilder builder = new BookBuilder(plies, minGames);
+        long start = System.nanoTime();
+        for (Path input : paths.subList(1, paths.size())) {
+            // PGN is specified as Latin-1, which also reads any byte without failing
+            try (Reader in = Files.newBufferedReader(input, StandardCharsets.ISO_8859_1)) {
+                builder.addPgn(in);
+            }
+        }
+        int records = builder.write(paths.get(0));
+        System.out.printf("%,d games (%,d not replayed in full), %,d book entries written to %s in %.2fs%n",
+                builder.games(), builder.rejected(), records, paths.get(0), (System.nanoTime() - start) / 1e9);
+    }
+}
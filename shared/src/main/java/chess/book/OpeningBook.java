@@ -0,0 +1,155 @@
+package chess.book;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.MoveList;
+import chess.PackedMove;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.random.RandomGenerator;
+
+/**
+ * A read-only opening book: for each position, the moves played from it in
+ * a collection of games, each with a weight saying how strongly it is
+ * recommended.
+ * <p>
+ * The book file is a {@value #HEADER_BYTES} byte header followed by fixed
+ * {@value #RECORD_BYTES} byte records of (Zobrist position key, packed move,
+ * weight), sorted by key and then by weight from highest. The file is
+ * memory-mapped rather than read, so every game on the server shares one
+ * copy through the operating system's page cache, and a lookup is a binary
+ * search over the mapping that allocates nothing. Instances are safe to
+ * share between threads.
+ */
+public final class OpeningBook {
+    static final long MAGIC = 0x4348455353424B31L; // "CHESSBK1"
+    static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 16;
+
+    private final MappedByteBuffer data;
+    private final int size;
+
+    private OpeningBook(MappedByteBuffer data, int size) {
+        this.data = data;
+        this.size = size;
+    }
+
+    /**
+     * Maps a book file written by {@link BookBuilder}
+     *
+     * @throws IOException if the file cannot be read or is not a book
+     */
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE
+                    || (length - HEADER_BYTES) % RECORD_BYTES != 0) {
+                throw new IOException("Not an opening book: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            data.order(ByteOrder.BIG_ENDIAN);
+            int size = (int) ((length - HEADER_BYTES) / RECORD_BYTES);
+            if (data.getLong(0) != MAGIC || data.getLong(8) != size) {
+                throw new IOException("Not an opening book: " + file);
+            }
+            return new OpeningBook(data, size);
+        }
+    }
+
+    /**
+     * @return the number of (position, move) entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds the book moves for a position to {@code moves}, highest weight first
+     *
+     * @param key the position's Zobrist key, as from {@link ChessGame#positionKey()}
+     * @return the total weight of the moves added, or 0 if the position is not in the book
+     */
+    public long lookup(long key, MoveList moves) {
+        long total = 0;
+        for (int i = firstIndex(key); i < size && keyAt(i) == key; i++) {
+            moves.add(moveAt(i));
+            total += weightAt(i);
+        }
+        return total;
+    }
+
+    /**
+     * @return the most recommended book move in the game's position, or null if it is not in the book
+     */
+    public ChessMove bestMove(ChessGame game) {
+        if (game.getTeamTurn() == null) {
+            return null;
+        }
+        long key = game.positionKey();
+        int index = firstIndex(key);
+        return (index < size && keyAt(index) == key) ? PackedMove.toChessMove(moveAt(index)) : null;
+    }
+
+    /**
+     * Picks a book move at random with probability in proportion to its weight,
+     * so that bots do not play the same opening every game
+     *
+     * @return the move, or null if the position is not in the book
+     */
+    public ChessMove pickMove(ChessGame game, RandomGenerator random) {
+        if (game.getTeamTurn() == null) {
+            return null;
+        }
+        long key = game.positionKey();
+        int first = firstIndex(key);
+        long total = 0;
+        int end = first;
+        while (end < size && keyAt(end) == key) {
+            total += weightAt(end++);
+        }
+        if (total == 0) {
+            return null;
+        }
+        long pick = random.nextLong(total);
+        for (int i = first; i < end; i++) {
+            pick -= weightAt(i);
+            if (pick < 0) {
+                return PackedMove.toChessMove(moveAt(i));
+            }
+        }
+        return PackedMove.toChessMove(moveAt(first));
+    }
+
+    // Index of the first record whose key is not below the given key, comparing keys as unsigned like the builder sorts them
+    private int firstIndex(long key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(int index) {
+        return data.getLong(HEADER_BYTES + index * RECORD_BYTES);
+    }
+
+    private int moveAt(int index) {
+        return data.getInt(HEADER_BYTES + index * RECORD_BYTES + 8);
+    }
+
+    private int weightAt(int index) {
+        return data.getInt(HEADER_BYTES + index * RECORD_BYTES + 12);
+    }
+}
@@ -0,0 +1,497 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.MoveGenerator;
+import chess.MoveList;
+import chess.PackedMove;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Picks a move with an iterative-deepening alpha-beta search, finishing each
+ * line with a quiescence search over captures so that scores are not taken
+ * in the middle of an exchange.
+ * <p>
+ * Results are cached in a {@link TranspositionTable}, which cuts off
+ * positions already searched deeply enough and otherwise supplies the best
+ * move found for them before. Moves are tried best-first: that move, then
+ * captures by most valuable victim and least valuable attacker, then the
+ * killer moves that caused cutoffs at the same ply, then quiet moves by
+ * their history of cutoffs.
+ * <p>
+ * One instance keeps its move lists and ordering tables between searches
+ * and plays moves with make/unmake on a private copy of the board, so after
+ * the first search the only allocation per search is the result. It runs on
+ * the calling thread and is not safe to share between threads; use one
+ * instance per worker, sharing a table between them if wanted.
+ * {@link #stop()} may be called from any thread.
+ */
+public class Engine {
+    /** Deepest iteration a search will start */
+    public static final int MAX_DEPTH = 64;
+    /** Deepest ply reachable with check extensions and quiescence */
+    public static final int MAX_PLY = 128;
+    /** Score of delivering mate at the root; mate n plies later scores MATE - n */
+    public static final int MATE = 30_000;
+    static final int INFINITY = 32_000;
+    /** Size of the table an engine creates for itself */
+    public static final int DEFAULT_TABLE_MEGABYTES = 16;
+
+    // How often the clock is read, in nodes; nanoTime is too slow to call at every node
+    private static final int CLOCK_INTERVAL = 1 << 11;
+    private static final int HISTORY_LIMIT = 1 << 14;
+
+    // Move ordering scores, highest first
+    private static final int PREVIOUS_BEST_SCORE = 1 << 30;
+    private static final int CAPTURE_SCORE = 1 << 24;
+    private static final int PROMOTION_SCORE = 1 << 23;
+    private static final int FIRST_KILLER_SCORE = 1 << 22;
+    private static final int SECOND_KILLER_SCORE = FIRST_KILLER_SCORE - 1;
+    // MVV-LVA rank by PieceType ordinal: KING, QUEEN, BISHOP, KNIGHT, ROOK, PAWN
+    private static final int[] ORDER_RANK = {6, 5, 3, 2, 4, 1};
+
+    // Skip patterns for helper threads, repeating every twenty helpers: helper n skips a depth d
+    // when (d + SKIP_PHASE[i]) / SKIP_SIZE[i] is odd, with i = (n - 1) % 20
+    private static final int[] SKIP_SIZE = {1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4};
+    private static final int[] SKIP_PHASE = {0, 1, 0, 1, 2, 3, 0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 6, 7};
+
+    private final MoveList[] moveLists = new MoveList[MAX_PLY + 1];
+    private final int[][] moveScores = new int[MAX_PLY + 1][MoveList.CAPACITY];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    // Cutoff counts for quiet moves, indexed by side to move then from * 64 + to
+    private final int[][] history = new int[2][64 * 64];
+    // Triangular principal variation table: pv[ply] holds the line from ply onwards
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    // Keys of the game's earlier positions followed by those on the current search path
+    private long[] keys = new long[256];
+    private int keyCount;
+
+    private ChessBoard board;
+    private long nodes;
+    private long nodeLimit;
+    private long deadline;
+    private boolean stopped;
+    private volatile boolean stopRequested;
+    private int previousBest;
+    private final TranspositionTable table;
+
+    /**
+     * Creates an engine with its own transposition table of
+     * {@value #DEFAULT_TABLE_MEGABYTES} MB
+     */
+    public Engine() {
+        this(new TranspositionTable(DEFAULT_TABLE_MEGABYTES));
+    }
+
+    /**
+     * Creates an engine that caches results in the given table, which may be
+     * shared with engines searching on other threads
+     */
+    public Engine(TranspositionTable table) {
+        this.table = table;
+        for (int i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new MoveList();
+        }
+    }
+
+    /**
+     * Searches the game's current position without changing the game
+     *
+     * @param game   the game to find a move in
+     * @param limits when to stop searching
+     * @return the best move found and how it was found
+     * @throws IllegalArgumentException if the game is over
+     */
+    public SearchResult search(ChessGame game, SearchLimits limits) {
+        if (game.getTeamTurn() == null) {
+            throw new IllegalArgumentException("The game is over");
+        }
+        stopRequested = false;
+        table.newSearch();
+        return search(game, limits, 0);
+    }
+
+    /**
+     * Runs the iterations of one search thread. Helper threads of a parallel
+     * search skip some depths, following a pattern picked by their number, so
+     * that together they cover the next few depths at once instead of all
+     * searching the same one.
+     *
+     * @param helper 0 for the main thread, or the number of a helper thread
+     */
+    SearchResult search(ChessGame game, SearchLimits limits, int helper) {
+        ChessGame.TeamColor side = game.getTeamTurn();
+        long start = System.nanoTime();
+        prepare(game, limits, start);
+
+        int maxDepth = (limits.depth() == 0) ? MAX_DEPTH : Math.min(limits.depth(), MAX_DEPTH);
+        int bestMove = PackedMove.NONE;
+        int bestScore = 0;
+        int completedDepth = 0;
+        List<ChessMove> line = List.of();
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            if (helper > 0 && skipsDepth(helper, depth)) {
+                continue;
+            }
+            int score = alphaBeta(depth, 0, -INFINITY, INFINITY, side);
+            if (stopped) {
+                // A cut short iteration may not have looked at the best move yet, so keep the last full one
+                if (bestMove == PackedMove.NONE) {
+                    bestMove = fallbackMove(side);
+                    line = (bestMove == PackedMove.NONE) ? List.of() : List.of(PackedMove.toChessMove(bestMove));
+                }
+                break;
+            }
+            completedDepth = depth;
+            bestScore = score;
+            if (pvLength[0] == 0) {
+                // No legal move: checkmate or stalemate
+                break;
+            }
+            bestMove = pv[0][0];
+            previousBest = bestMove;
+            line = principalVariation();
+            // A forced mate within this depth cannot be improved by looking deeper
+            if (Math.abs(score) >= MATE - depth) {
+                break;
+            }
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        board = null;
+        ChessMove move = (bestMove == PackedMove.NONE) ? null : PackedMove.toChessMove(bestMove);
+        return new SearchResult(move, bestScore, completedDepth, nodes, millis, line);
+    }
+
+    /**
+     * Asks a running search to finish; it returns the best move of its last
+     * completed iteration. Safe to call from another thread. The request only
+     * applies to the search in progress.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    // Clears an earlier stop request; for a parallel search to call before handing the engine to a thread
+    void clearStop() {
+        stopRequested = false;
+    }
+
+    private static boolean skipsDepth(int helper, int depth) {
+        int i = (helper - 1) % SKIP_SIZE.length;
+        return ((depth + SKIP_PHASE[i]) / SKIP_SIZE[i]) % 2 != 0;
+    }
+
+    // The best move so far of a first iteration that was cut short, or else any legal move
+    private int fallbackMove(ChessGame.TeamColor side) {
+        if (pvLength[0] > 0) {
+            return pv[0][0];
+        }
+        MoveList moves = moveLists[0];
+        moves.clear();
+        MoveGenerator.generateLegalMoves(board, side, moves);
+        return moves.isEmpty() ? PackedMove.NONE : moves.get(0);
+    }
+
+    private void prepare(ChessGame game, SearchLimits limits, long start) {
+        board = new ChessBoard(game.getBoard());
+        nodes = 0;
+        nodeLimit = (limits.nodes() == 0) ? Long.MAX_VALUE : limits.nodes();
+        deadline = (limits.millis() == 0) ? Long.MAX_VALUE : start + limits.millis() * 1_000_000;
+        stopped = false;
+        previousBest = PackedMove.NONE;
+
+        long[] history = game.getPositionHistory();
+        if (keys.length < history.length + MAX_PLY + 1) {
+            keys = new long[history.length + MAX_PLY + 1];
+        }
+        System.arraycopy(history, 0, keys, 0, history.length);
+        keyCount = history.length;
+        keys[keyCount++] = board.positionKey(game.getTeamTurn());
+
+        for (int[] pair : killers) {
+            Arrays.fill(pair, PackedMove.NONE);
+        }
+        // Keep what earlier searches learned about quiet moves, but let this one outweigh it
+        for (int[] counts : this.history) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] >>= 2;
+            }
+        }
+    }
+
+    private int alphaBeta(int depth, int ply, int alpha, int beta, ChessGame.TeamColor side) {
+        pvLength[ply] = 0;
+        if (ply > 0 && isDraw()) {
+            return 0;
+        }
+        boolean inCheck = board.isInCheck(side);
+        if (inCheck && ply < MAX_PLY / 2) {
+            // Look one ply further at checks so forced lines are not cut off at the horizon
+            depth++;
+        }
+        if (depth <= 0 || ply >= MAX_PLY) {
+            return quiescence(ply, alpha, beta, side);
+        }
+        if (countNode()) {
+            return 0;
+        }
+
+        long key = keys[keyCount - 1];
+        long entry = table.probe(key);
+        int tableMove = (ply == 0) ? previousBest : PackedMove.NONE;
+        if (entry != 0) {
+            tableMove = TranspositionTable.move(entry);
+            // Trust a stored bound only off the principal variation, so the reported line stays complete
+            if (ply > 0 && beta - alpha == 1 && TranspositionTable.depth(entry) >= depth) {
+                int score = TranspositionTable.fromStored(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && score >= beta)
+                        || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        MoveList moves = moveLists[ply];
+        moves.clear();
+        MoveGenerator.generateLegalMoves(board, side, moves);
+        if (moves.isEmpty()) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        scoreMoves(moves, ply, side, tableMove);
+
+        ChessGame.TeamColor opponent = opponent(side);
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = PackedMove.NONE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, ply, i);
+            play(move, opponent);
+            int score;
+            if (i == 0) {
+                score = -alphaBeta(depth - 1, ply + 1, -beta, -alpha, opponent);
+            } else {
+                // Expect the first move to stay best: prove it with a null window and
+                // search again in full only when this move beats it
+                score = -alphaBeta(depth - 1, ply + 1, -alpha - 1, -alpha, opponent);
+                if (score > alpha && score < beta) {
+                    score = -alphaBeta(depth - 1, ply + 1, -beta, -alpha, opponent);
+                }
+            }
+            undo(move);
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                    updatePrincipalVariation(ply, move);
+                    if (score >= beta) {
+                        if (!PackedMove.isCapture(move) && !PackedMove.isPromotion(move)) {
+                            rememberQuietCutoff(move, ply, side, depth);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = (best >= beta) ? TranspositionTable.LOWER
+                : (best > originalAlpha) ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(key, bestMove, TranspositionTable.toStored(best, ply), depth, bound);
+        return best;
+    }
+
+    // Searches captures only until the position is quiet, so the static evaluation is not taken mid-exchange
+    private int quiescence(int ply, int alpha, int beta, ChessGame.TeamColor side) {
+        pvLength[ply] = 0;
+        if (countNode()) {
+            return 0;
+        }
+        if (ply >= MAX_PLY) {
+            return Evaluation.evaluate(board, side);
+        }
+        MoveList moves = moveLists[ply];
+        moves.clear();
+        int best;
+        if (board.isInCheck(side)) {
+            // A side in check cannot stand pat: every evasion has to be tried, and having none is mate
+            MoveGenerator.generateLegalMoves(board, side, moves);
+            if (moves.isEmpty()) {
+                return -MATE + ply;
+            }
+            best = -INFINITY;
+        } else {
+            // The side to move can usually do at least as well as standing pat
+            int standPat = Evaluation.evaluate(board, side);
+            if (standPat >= beta) {
+                return standPat;
+            }
+            if (standPat > alpha) {
+                alpha = standPat;
+            }
+            MoveGenerator.generateLegalCaptures(board, side, moves);
+            best = standPat;
+        }
+        scoreMoves(moves, ply, side, PackedMove.NONE);
+
+        ChessGame.TeamColor opponent = opponent(side);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickNext(moves, ply, i);
+            play(move, opponent);
+            int score = -quiescence(ply + 1, -beta, -alpha, opponent);
+            undo(move);
+            if (stopped) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (score >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // Counts a node and checks the limits; true once the search has to stop
+    private boolean countNode() {
+        nodes++;
+        if (nodes >= nodeLimit || stopRequested
+                || ((nodes & (CLOCK_INTERVAL - 1)) == 0 && System.nanoTime() >= deadline)) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    // A repetition of any earlier position or fifty moves without progress; inside the search
+    // one repetition is scored as a draw, since the side that repeated could do it again
+    private boolean isDraw() {
+        int halfmoveClock = board.getHalfmoveClock();
+        if (halfmoveClock >= 100) {
+            return true;
+        }
+        long key = keys[keyCount - 1];
+        // Only positions with the same side to move and no irreversible move since can match
+        int oldest = Math.max(0, keyCount - 1 - halfmoveClock);
+        for (int i = keyCount - 3; i >= oldest; i -= 2) {
+            if (keys[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void play(int move, ChessGame.TeamColor nextSide) {
+        board.makeMove(move);
+        keys[keyCount++] = board.positionKey(nextSide);
+    }
+
+    private void undo(int move) {
+        keyCount--;
+        board.unmakeMove(move);
+    }
+
+    private void scoreMoves(MoveList moves, int ply, ChessGame.TeamColor side, int previous) {
+        int[] scores = moveScores[ply];
+        if (scores.length < moves.size()) {
+            // Only a board set up with extra pieces has this many moves
+            scores = new int[moves.size()];
+            moveScores[ply] = scores;
+        }
+        int[] sideHistory = history[side.ordinal()];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int from = PackedMove.from(move);
+            int to = PackedMove.to(move);
+            int score;
+            if (move == previous) {
+                score = PREVIOUS_BEST_SCORE;
+            } else if (PackedMove.isCapture(move)) {
+                ChessPiece victim = board.getPiece(to);
+                int victimRank = (victim == null) ? ORDER_RANK[ChessPiece.PieceType.PAWN.ordinal()]
+                        : ORDER_RANK[victim.getPieceType().ordinal()];
+                score = CAPTURE_SCORE + victimRank * 8 - ORDER_RANK[board.getPiece(from).getPieceType().ordinal()];
+            } else if (PackedMove.promotion(move) == ChessPiece.PieceType.QUEEN) {
+                score = PROMOTION_SCORE;
+            } else if (move == killers[ply][0]) {
+                score = FIRST_KILLER_SCORE;
+            } else if (move == killers[ply][1]) {
+                score = SECOND_KILLER_SCORE;
+            } else {
+                score = sideHistory[from * 64 + to];
+            }
+            scores[i] = score;
+        }
+    }
+
+    // Swaps the best scored of the remaining moves into place; most nodes cut off after
+    // a move or two, so sorting the whole list up front would be wasted work
+    private int pickNext(MoveList moves, int ply, int index) {
+        int[] scores = moveScores[ply];
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves.get(best);
+        if (best != index) {
+            moves.set(best, moves.get(index));
+            moves.set(index, move);
+            int score = scores[best];
+            scores[best] = scores[index];
+            scores[index] = score;
+        }
+        return move;
+    }
+
+    private void rememberQuietCutoff(int move, int ply, ChessGame.TeamColor side, int depth) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] counts = history[side.ordinal()];
+        int index = PackedMove.from(move) * 64 + PackedMove.to(move);
+        counts[index] += depth * depth;
+        if (counts[index] >= HISTORY_LIMIT) {
+            // Halve everything so history stays below the killer scores and old cutoffs fade
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] >>= 1;
+            }
+        }
+    }
+
+    private void updatePrincipalVariation(int ply, int move) {
+        pv[ply][0] = move;
+        int childLength = pvLength[ply + 1];
+        System.arraycopy(pv[ply + 1], 0, pv[ply], 1, childLength);
+        pvLength[ply] = childLength + 1;
+    }
+
+    private List<ChessMove> principalVariation() {
+        List<ChessMove> line = new ArrayList<>(pvLength[0]);
+        for (int i = 0; i < pvLength[0]; i++) {
+            line.add(PackedMove.toChessMove(pv[0][i]));
+        }
+        return List.copyOf(line);
+    }
+
+    private static ChessGame.TeamColor opponent(ChessGame.TeamColor color) {
+        return (color == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
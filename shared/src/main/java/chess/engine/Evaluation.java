@@ -0,0 +1,28 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+
+/**
+ * Static evaluation: material plus a piece-square bonus for each piece,
+ * blended between middlegame and endgame values by game phase, scored in
+ * centipawns from the point of view of the side to move.
+ * <p>
+ * The board keeps those totals up to date as moves are made and taken
+ * back (see {@link chess.PieceSquareTables}), so evaluating a position
+ * costs the same however many pieces are on it.
+ */
+public final class Evaluation {
+
+    private Evaluation() {
+    }
+
+    /**
+     * @return the score of the position in centipawns, positive when it
+     * favors {@code sideToMove}
+     */
+    public static int evaluate(ChessBoard board, ChessGame.TeamColor sideToMove) {
+        int score = board.materialScore();
+        return (sideToMove == ChessGame.TeamColor.WHITE) ? score : -score;
+    }
+}
@@ -0,0 +1,177 @@
+package chess.engine;
+
+import chess.ChessGame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches one position on several threads at once ("Lazy SMP"). Every
+ * thread runs its own {@link Engine} over the same root, and they share one
+ * {@link TranspositionTable}, so each thread's results cut off and reorder
+ * the others' work. Helper threads skip some depths in staggered patterns so
+ * they run ahead of the main thread rather than repeat it.
+ * <p>
+ * The main search runs on the calling thread and decides when to stop; the
+ * helpers run on a pool owned by this object and are stopped with it. The
+ * move played is then picked by a vote between the threads, weighted by
+ * each thread's depth and score, with ties going to the lower numbered
+ * thread so that the same set of results always gives the same move.
+ * <p>
+ * One instance runs one search at a time; a server analysing many games
+ * keeps a small pool of instances rather than creating one per request,
+ * since each holds its table and threads. Close it to stop the threads.
+ */
+public class ParallelSearch implements AutoCloseable {
+    private final TranspositionTable table;
+    private final Engine[] engines;
+    private final ExecutorService helpers;
+
+    /**
+     * @param threads        number of threads to search with, including the caller's
+     * @param tableMegabytes size of the shared transposition table
+     */
+    public ParallelSearch(int threads, int tableMegabytes) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one search thread is needed");
+        }
+        this.table = new TranspositionTable(tableMegabytes);
+        this.engines = new Engine[threads];
+        for (int i = 0; i < threads; i++) {
+            engines[i] = new Engine(table);
+        }
+        AtomicInteger count = new AtomicInteger();
+        this.helpers = (threads == 1) ? null : Executors.newFixedThreadPool(threads - 1, runnable -> {
+            Thread thread = new Thread(runnable, "search-helper-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int threads() {
+        return engines.length;
+    }
+
+    /**
+     * Searches the game's current position without changing the game. A
+     * node limit is shared out evenly between the threads; the time and
+     * depth limits apply to the main thread, which stops the helpers when
+     * it finishes.
+     *
+     * @return the voted best move, with its thread's score and line and the
+     * nodes counted by every thread
+     * @throws IllegalArgumentException if the game is over
+     */
+    public synchronized SearchResult search(ChessGame game, SearchLimits limits) {
+        if (game.getTeamTurn() == null) {
+            throw new IllegalArgumentException("The game is over");
+        }
+        long start = System.nanoTime();
+        SearchLimits threadLimits = (limits.nodes() == 0) ? limits
+                : limits.withNodes(Math.max(1, (limits.nodes() + engines.length - 1) / engines.length));
+        table.newSearch();
+        for (Engine engine : engines) {
+            engine.clearStop();
+        }
+
+        List<Future<SearchResult>> running = new ArrayList<>(engines.length - 1);
+        for (int i = 1; i < engines.length; i++) {
+            int helper = i;
+            running.add(helpers.submit(() -> engines[helper].search(game, threadLimits, helper)));
+        }
+        SearchResult[] results = new SearchResult[engines.length];
+        try {
+            results[0] = engines[0].search(game, threadLimits, 0);
+        } finally {
+            stop();
+            for (int i = 1; i < engines.length; i++) {
+                results[i] = await(running.get(i - 1));
+            }
+        }
+
+        SearchResult chosen = vote(results);
+        long nodes = 0;
+        int depth = 0;
+        for (SearchResult result : results) {
+            if (result != null) {
+                nodes += result.nodes();
+                depth = Math.max(depth, result.depth());
+            }
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        return new SearchResult(chosen.bestMove(), chosen.score(), depth, nodes, millis, chosen.principalVariation());
+    }
+
+    /**
+     * Asks a running search to finish. Safe to call from any thread.
+     */
+    public void stop() {
+        for (Engine engine : engines) {
+            engine.stop();
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    // A helper that failed contributes nothing; the main thread's result is always there
+    private static SearchResult await(Future<SearchResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Each thread votes for its best move with a weight of its depth times
+     * how far its score is above the worst score any thread reported, so a
+     * move backed by deeper searches and better scores wins
+     *
+     * @return the result of the first thread whose move got the most votes
+     */
+    static SearchResult vote(SearchResult[] results) {
+        int minScore = Integer.MAX_VALUE;
+        for (SearchResult result : results) {
+            if (votes(result)) {
+                minScore = Math.min(minScore, result.score());
+            }
+        }
+        SearchResult chosen = results[0];
+        long chosenVotes = -1;
+        for (SearchResult candidate : results) {
+            if (!votes(candidate)) {
+                continue;
+            }
+            long total = 0;
+            for (SearchResult result : results) {
+                if (votes(result) && result.bestMove().equals(candidate.bestMove())) {
+                    total += (long) (result.score() - minScore + 14) * result.depth();
+                }
+            }
+            if (total > chosenVotes) {
+                chosen = candidate;
+                chosenVotes = total;
+            }
+        }
+        return chosen;
+    }
+
+    // Only threads that finished an iteration have a move worth counting
+    private static boolean votes(SearchResult result) {
+        return result != null && result.bestMove() != null && result.depth() > 0;
+    }
+}
@@ -0,0 +1,57 @@
+package chess.engine;
+
+import chess.perft.PerftPosition;
+
+import java.time.Duration;
+
+/**
+ * Command line report of how parallel search scales with thread count.
+ * <pre>
+ *   ScalingMain [seconds] [maxThreads] [tableMegabytes]
+ *       searches every perft reference position for the given time (default 2s)
+ *       with 1, 2, 4 ... threads up to maxThreads (default: every core), and
+ *       prints nodes per second, speedup over one thread, efficiency per
+ *       thread and the average depth reached
+ * </pre>
+ */
+public class ScalingMain {
+    private static final int DEFAULT_SECONDS = 2;
+    private static final int DEFAULT_TABLE_MEGABYTES = 256;
+
+    public static void main(String[] args) {
+        Duration time = Duration.ofSeconds((args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_SECONDS);
+        int maxThreads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int megabytes = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_TABLE_MEGABYTES;
+
+        System.out.printf("%7s %14s %8s %10s %6s%n", "threads", "nodes/sec", "speedup", "efficiency", "depth");
+        long baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads = nextCount(threads, maxThreads)) {
+            long nodes = 0;
+            long millis = 0;
+            int depth = 0;
+            try (ParallelSearch search = new ParallelSearch(threads, megabytes)) {
+                for (PerftPosition position : PerftPosition.REFERENCE) {
+                    SearchResult result = search.search(position.game(), SearchLimits.time(time));
+                    nodes += result.nodes();
+                    millis += result.millis();
+                    depth += result.depth();
+                }
+            }
+            long nps = nodes * 1000 / Math.max(millis, 1);
+            if (threads == 1) {
+                baseline = nps;
+            }
+            double speedup = (double) nps / Math.max(baseline, 1);
+            System.out.printf("%7d %,14d %7.2fx %9.0f%% %6.1f%n", threads, nps, speedup,
+                    100 * speedup / threads, (double) depth / PerftPosition.REFERENCE.size());
+        }
+    }
+
+    // Doubles the thread count, finishing on the maximum itself when it is not a power of two
+    private static int nextCount(int threads, int maxThreads) {
+        if (threads == maxThreads) {
+            return maxThreads + 1;
+        }
+        return Math.min(threads * 2, maxThreads);
+    }
+}
@@ -0,0 +1,53 @@
+package chess.engine;
+
+import java.time.Duration;
+
+/**
+ * How much work a search may do before it reports its best move. The search
+ * stops at whichever limit it reaches first; a limit of 0 means no limit of
+ * that kind.
+ *
+ * @param depth  deepest iteration to finish, in plies
+ * @param nodes  most positions to visit
+ * @param millis most wall clock time to spend, in milliseconds
+ */
+public record SearchLimits(int depth, long nodes, long millis) {
+
+    public SearchLimits {
+        if (depth < 0 || nodes < 0 || millis < 0) {
+            throw new IllegalArgumentException("Search limits must not be negative");
+        }
+    }
+
+    /**
+     * No limits at all; the search runs until {@link Engine#stop()} is called
+     * or it reaches {@link Engine#MAX_DEPTH}
+     */
+    public static SearchLimits infinite() {
+        return new SearchLimits(0, 0, 0);
+    }
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(0, nodes, 0);
+    }
+
+    public static SearchLimits time(Duration time) {
+        return new SearchLimits(0, 0, time.toMillis());
+    }
+
+    public SearchLimits withDepth(int depth) {
+        return new SearchLimits(depth, nodes, millis);
+    }
+
+    public SearchLimits withNodes(long nodes) {
+        return new SearchLimits(depth, nodes, millis);
+    }
+
+    public SearchLimits withTime(Duration time) {
+        return new SearchLimits(depth, nodes, time.toMillis());
+    }
+}
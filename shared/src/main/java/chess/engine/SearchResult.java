@@ -0,0 +1,46 @@
+package chess.engine;
+
+import chess.ChessMove;
+
+import java.util.List;
+
+/**
+ * What a search found: the move to play, its score and the line the engine
+ * expects, plus counters for how much work it took.
+ *
+ * @param bestMove           the move to play, or null if the side to move has no legal move
+ * @param score              centipawns from the side to move's point of view, or a mate score
+ * @param depth              deepest iteration that finished
+ * @param nodes              positions visited, including quiescence
+ * @param millis             wall clock time spent
+ * @param principalVariation the expected line starting with {@code bestMove}
+ */
+public record SearchResult(ChessMove bestMove, int score, int depth, long nodes, long millis,
+                           List<ChessMove> principalVariation) {
+
+    /**
+     * @return positions visited per second of search
+     */
+    public long nodesPerSecond() {
+        return (millis == 0) ? nodes * 1000 : nodes * 1000 / millis;
+    }
+
+    /**
+     * @return true if the score is a forced mate for either side
+     */
+    public boolean isMate() {
+        return Math.abs(score) >= Engine.MATE - Engine.MAX_PLY;
+    }
+
+    /**
+     * @return moves until mate, positive when the side to move mates and
+     * negative when it is mated, or 0 if the score is not a mate
+     */
+    public int mateIn() {
+        if (!isMate()) {
+            return 0;
+        }
+        int plies = Engine.MATE - Math.abs(score);
+        return (score > 0) ? (plies + 1) / 2 : -(plies / 2);
+    }
+}
@@ -0,0 +1,194 @@
+package chess.engine;
+
+import chess.PackedMove;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size cache of search results keyed by Zobrist position key, so a
+ * position reached again by another move order is not searched twice.
+ * <p>
+ * The table is one flat {@code long[]} allocated up front, holding buckets
+ * of two entries: one kept for the deepest result seen and one that every
+ * store may overwrite. Each entry is a key word and a data word, with the
+ * key stored XORed with the data. Threads read and write without locks; if
+ * two writes to an entry interleave, the key no longer checks out and the
+ * entry is simply missed, which a search already has to tolerate since
+ * entries are overwritten all the time.
+ * <p>
+ * Being one primitive array the garbage collector never scans inside it,
+ * so even multi-gigabyte tables add no GC work after allocation.
+ */
+public final class TranspositionTable {
+    /** The score is exact */
+    public static final int EXACT = 3;
+    /** The score is at least this; the search failed high */
+    public static final int LOWER = 2;
+    /** The score is at most this; the search failed low */
+    public static final int UPPER = 1;
+
+    /** Largest supported size; one Java array holds at most 2^31 longs */
+    public static final int MAX_MEGABYTES = 8 * 1024;
+
+    // Two entries of two longs each
+    private static final int LONGS_PER_BUCKET = 4;
+    private static final int BYTES_PER_BUCKET = LONGS_PER_BUCKET * Long.BYTES;
+
+    // Data word: move in bits 0-18, score + 32768 in 19-34, depth in 35-42, bound in 43-44, generation in 45-52
+    private static final int SCORE_SHIFT = 19;
+    private static final int DEPTH_SHIFT = 35;
+    private static final int BOUND_SHIFT = 43;
+    private static final int GENERATION_SHIFT = 45;
+    private static final long MOVE_MASK = (1L << SCORE_SHIFT) - 1;
+    private static final int SCORE_OFFSET = 1 << 15;
+
+    private final long[] table;
+    private final long bucketMask;
+    private volatile int generation;
+
+    /**
+     * @param megabytes memory to use, rounded down to a power of two, from 1 to {@link #MAX_MEGABYTES}
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1 || megabytes > MAX_MEGABYTES) {
+            throw new IllegalArgumentException("Table size must be between 1 and " + MAX_MEGABYTES + " MB");
+        }
+        long buckets = Long.highestOneBit(megabytes) * 1024L * 1024L / BYTES_PER_BUCKET;
+        this.table = new long[(int) (buckets * LONGS_PER_BUCKET)];
+        this.bucketMask = buckets - 1;
+    }
+
+    /**
+     * Forgets every entry. Not safe to call while a search is using the table.
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+        generation = 0;
+    }
+
+    /**
+     * Marks the start of a new search, so entries left by earlier searches
+     * are replaced before entries from this one
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * @return the number of entries the table can hold
+     */
+    public long capacity() {
+        return (bucketMask + 1) * 2;
+    }
+
+    /**
+     * @return the data word stored for the key, or 0 if there is none
+     */
+    long probe(long key) {
+        int index = bucketIndex(key);
+        for (int slot = index; slot < index + LONGS_PER_BUCKET; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != 0) {
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Saves a search result, keeping the deeper result for the key when the
+     * deep entry is already taken by this search
+     *
+     * @param score a score with mate distances counted from this position, see {@link #toStored}
+     */
+    void store(long key, int move, int score, int depth, int bound) {
+        int index = bucketIndex(key);
+        int generation = this.generation;
+        long data = (move & MOVE_MASK)
+                | ((long) (score + SCORE_OFFSET) << SCORE_SHIFT)
+                | ((long) Math.min(depth, 0xFF) << DEPTH_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) generation << GENERATION_SHIFT);
+
+        long deepData = table[index + 1];
+        boolean sameKey = (table[index] ^ deepData) == key;
+        if (deepData == 0 || sameKey || generation(deepData) != generation || depth >= depth(deepData)) {
+            if (sameKey && move == PackedMove.NONE) {
+                // Keep the best move found by an earlier search of this position
+                data |= move(deepData);
+            }
+            table[index] = key ^ data;
+            table[index + 1] = data;
+        } else {
+            table[index + 2] = key ^ data;
+            table[index + 3] = data;
+        }
+    }
+
+    /**
+     * @return roughly how full the table is with entries from the current
+     * search, in parts per thousand, from a sample of the first buckets
+     */
+    public int hashfull() {
+        int sample = (int) Math.min(1000, capacity());
+        int used = 0;
+        int generation = this.generation;
+        for (int i = 0; i < sample; i++) {
+            long data = table[(i / 2) * LONGS_PER_BUCKET + (i % 2) * 2 + 1];
+            if (data != 0 && generation(data) == generation) {
+                used++;
+            }
+        }
+        return used * 1000 / sample;
+    }
+
+    private int bucketIndex(long key) {
+        // The low bits pick the bucket; the whole key is still compared on lookup
+        return (int) (key & bucketMask) * LONGS_PER_BUCKET;
+    }
+
+    static int move(long data) {
+        return (int) (data & MOVE_MASK);
+    }
+
+    static int score(long data) {
+        return (int) ((data >>> SCORE_SHIFT) & 0xFFFF) - SCORE_OFFSET;
+    }
+
+    static int depth(long data) {
+        return (int) ((data >>> DEPTH_SHIFT) & 0xFF);
+    }
+
+    static int bound(long data) {
+        return (int) ((data >>> BOUND_SHIFT) & 0x3);
+    }
+
+    private static int generation(long data) {
+        return (int) ((data >>> GENERATION_SHIFT) & 0xFF);
+    }
+
+    /**
+     * Mate scores are relative to the root of the search that found them;
+     * stored they are made relative to the position itself, so they stay
+     * right when the position is reached at another ply
+     */
+    static int toStored(int score, int ply) {
+        if (score >= Engine.MATE - Engine.MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -Engine.MATE + Engine.MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    static int fromStored(int score, int ply) {
+        if (score >= Engine.MATE - Engine.MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -Engine.MATE + Engine.MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+}
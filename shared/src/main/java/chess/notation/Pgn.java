@@ -0,0 +1,182 @@
+package chess.notation;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads games from Portable Game Notation, the text format chess databases
+ * are exchanged in. Tag pairs and the SAN moves of the main line are kept;
+ * move numbers, comments, annotation glyphs and side variations are
+ * skipped.
+ * <p>
+ * Games are streamed one at a time, so files with millions of games can be
+ * read without holding them all in memory.
+ */
+public final class Pgn {
+
+    /**
+     * One game from a PGN file
+     *
+     * @param tags   tag pairs such as {@code Event} and {@code White}, in file order
+     * @param moves  main line moves in SAN, as written
+     * @param result {@code 1-0}, {@code 0-1}, {@code 1/2-1/2} or {@code *}
+     */
+    public record Game(Map<String, String> tags, List<String> moves, String result) {
+    }
+
+    private Pgn() {
+    }
+
+    /**
+     * Reads every game from the input and hands each to the consumer as soon
+     * as it is complete
+     *
+     * @throws IllegalArgumentException if the text is not well-formed PGN
+     */
+    public static void read(Reader in, Consumer<Game> games) throws IOException {
+        Lexer lexer = new Lexer(in);
+        Map<String, String> tags = new LinkedHashMap<>();
+        List<String> moves = new ArrayList<>();
+        String token;
+        while ((token = lexer.next()) != null) {
+            if (token.equals("[")) {
+                if (!moves.isEmpty()) {
+                    // A new tag section without a result closes the previous game
+                    games.accept(new Game(tags, moves, "*"));
+                    tags = new LinkedHashMap<>();
+                    moves = new ArrayList<>();
+                }
+                String name = lexer.next();
+                String value = lexer.next();
+                if (name == null || value == null || !"]".equals(lexer.next())) {
+                    throw new IllegalArgumentException("Malformed PGN tag pair near line " + lexer.line);
+                }
+                tags.put(name, value);
+            } else if (isResult(token)) {
+                games.accept(new Game(tags, moves, token));
+                tags = new LinkedHashMap<>();
+                moves = new ArrayList<>();
+            } else if (!isMoveNumber(token)) {
+                moves.add(token);
+            }
+        }
+        if (!moves.isEmpty() || !tags.isEmpty()) {
+            games.accept(new Game(tags, moves, "*"));
+        }
+    }
+
+    private static boolean isResult(String token) {
+        return token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*");
+    }
+
+    // "12." or "12..." ahead of a move
+    private static boolean isMoveNumber(String token) {
+        return Character.isDigit(token.charAt(0)) && token.endsWith(".");
+    }
+
+    // Splits PGN into tokens, dropping comments, glyphs and variations along the way
+    private static final class Lexer {
+        private static final int NONE = -2;
+
+        private final Reader in;
+        private final StringBuilder text = new StringBuilder(16);
+        private int pushedBack = NONE;
+        private int line = 1;
+
+        Lexer(Reader in) {
+            this.in = in;
+        }
+
+        // The next token: "[", "]", a quoted string's contents or a symbol, or null at the end
+        String next() throws IOException {
+            int variationDepth = 0;
+            while (true) {
+                int c = read();
+                if (c < 0) {
+                    return null;
+                }
+                if (c == '{') {
+                    skipUntil('}');
+                } else if (c == ';') {
+                    skipUntil('\n');
+                } else if (c == '(') {
+                    variationDepth++;
+                } else if (c == ')') {
+                    variationDepth = Math.max(0, variationDepth - 1);
+                } else if (Character.isWhitespace(c)) {
+                    continue;
+                } else if (c == '"') {
+                    String value = readString();
+                    if (variationDepth == 0) {
+                        return value;
+                    }
+                } else if (variationDepth > 0) {
+                    readSymbol(c);
+                } else if (c == '[' || c == ']') {
+                    return (c == '[') ? "[" : "]";
+                } else if (c == '$') {
+                    readSymbol(c);
+                } else {
+                    String symbol = readSymbol(c);
+                    // Move numbers are now and then written against the move, as in "1.e4" or "3...Nf6"
+                    int dot = symbol.lastIndexOf('.');
+                    if (dot >= 0 && dot < symbol.length() - 1 && Character.isDigit(symbol.charAt(0))) {
+                        return symbol.substring(dot + 1);
+                    }
+                    return symbol;
+                }
+            }
+        }
+
+        private String readString() throws IOException {
+            text.setLength(0);
+            int c;
+            while ((c = read()) != '"') {
+                if (c < 0) {
+                    throw new IllegalArgumentException("Unterminated PGN string near line " + line);
+                }
+                if (c == '\\') {
+                    c = read();
+                }
+                text.append((char) c);
+            }
+            return text.toString();
+        }
+
+        private String readSymbol(int first) throws IOException {
+            text.setLength(0);
+            text.append((char) first);
+            int c;
+            while ((c = read()) >= 0 && !Character.isWhitespace(c) && "[]{}();\"".indexOf(c) < 0) {
+                text.append((char) c);
+            }
+            pushedBack = c;
+            return text.toString();
+        }
+
+        private void skipUntil(int end) throws IOException {
+            int c;
+            do {
+                c = read();
+            } while (c >= 0 && c != end);
+        }
+
+        private int read() throws IOException {
+            if (pushedBack != NONE) {
+                int c = pushedBack;
+                pushedBack = NONE;
+                return c;
+            }
+            int c = in.read();
+            if (c == '\n') {
+                line++;
+            }
+            return c;
+        }
+    }
+}
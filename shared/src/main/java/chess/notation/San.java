@@ -0,0 +1,268 @@
+package chess.notation;
+
+import chess.Bitboards;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.MoveGenerator;
+import chess.MoveList;
+import chess.PackedMove;
+
+/**
+ * Standard Algebraic Notation, the move format used in printed games and
+ * PGN: {@code e4}, {@code Nxf3+}, {@code exd6}, {@code R1e2}, {@code e8=Q#},
+ * {@code O-O-O}.
+ * <p>
+ * SAN depends on the position, since the start square is only written when
+ * another piece of the same kind could reach the same square, and the move
+ * is marked when it gives check or mate. Formatting works those out on the
+ * board's bitboards, playing a candidate move and taking it back when
+ * legality has to be checked. The board is therefore changed during the
+ * call, though it is always left as it was, so formatting must only be
+ * done by the thread that owns the game or board; parsing only reads it.
+ * <p>
+ * Callers that format or parse many moves pass in a {@link MoveList} and
+ * {@link StringBuilder} of their own to reuse. The shorter forms use ones
+ * kept per thread, so no call allocates anything but the result.
+ */
+public final class San {
+    // Indexed by PieceType ordinal
+    private static final String LETTERS = "KQBNRP";
+    private static final ChessPiece.PieceType[] TYPES = ChessPiece.PieceType.values();
+
+    private static final ThreadLocal<MoveList> MOVES = ThreadLocal.withInitial(MoveList::new);
+    private static final ThreadLocal<StringBuilder> TEXT = ThreadLocal.withInitial(() -> new StringBuilder(8));
+
+    private San() {
+    }
+
+    /**
+     * @return the move in SAN for the game's current position
+     * @throws IllegalArgumentException if the move is not legal in the game
+     */
+    public static String format(ChessGame game, ChessMove move) {
+        StringBuilder sb = TEXT.get();
+        sb.setLength(0);
+        format(game, move, MOVES.get(), sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the move in SAN for the game's current position
+     *
+     * @param moves a list to generate the piece's moves into, cleared first
+     * @throws IllegalArgumentException if the move is not legal in the game
+     */
+    public static void format(ChessGame game, ChessMove move, MoveList moves, StringBuilder sb) {
+        ChessBoard board = game.getBoard();
+        moves.clear();
+        MoveGenerator.generateLegalMoves(board, Bitboards.square(move.getStartPosition()), moves);
+        int packedMove = moves.find(move);
+        if (packedMove == PackedMove.NONE) {
+            throw new IllegalArgumentException("Not a legal move: " + move);
+        }
+        format(board, packedMove, sb);
+    }
+
+    /**
+     * @param packedMove a legal move on the board, as produced by {@link MoveGenerator}
+     * @return the move in SAN
+     */
+    public static String format(ChessBoard board, int packedMove) {
+        StringBuilder sb = TEXT.get();
+        sb.setLength(0);
+        format(board, packedMove, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends a move in SAN
+     *
+     * @param packedMove a legal move on the board, as produced by {@link MoveGenerator}
+     */
+    public static void format(ChessBoard board, int packedMove, StringBuilder sb) {
+        int from = PackedMove.from(packedMove);
+        int to = PackedMove.to(packedMove);
+        ChessPiece piece = board.getPiece(from);
+        ChessGame.TeamColor color = piece.getTeamColor();
+
+        if (PackedMove.isCastle(packedMove)) {
+            sb.append(to > from ? "O-O" : "O-O-O");
+        } else if (piece.getPieceType() == ChessPiece.PieceType.PAWN) {
+            if (PackedMove.isCapture(packedMove)) {
+                sb.append(Squares.file(from)).append('x');
+            }
+            sb.append(Squares.name(to));
+            if (PackedMove.isPromotion(packedMove)) {
+                sb.append('=').append(letter(PackedMove.promotion(packedMove)));
+            }
+        } else {
+            sb.append(letter(piece.getPieceType()));
+            appendDisambiguation(sb, board, color, piece.getPieceType(), from, to);
+            if (PackedMove.isCapture(packedMove)) {
+                sb.append('x');
+            }
+            sb.append(Squares.name(to));
+        }
+
+        ChessGame.TeamColor opponent = (color == ChessGame.TeamColor.WHITE)
+                ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        board.makeMove(packedMove);
+        if (board.isInCheck(opponent)) {
+            sb.append(MoveGenerator.hasLegalMove(board, opponent) ? '+' : '#');
+        }
+        board.unmakeMove(packedMove);
+    }
+
+    // Adds the start file, rank or both when another piece of the same kind could legally move to the same square
+    private static void appendDisambiguation(StringBuilder sb, ChessBoard board, ChessGame.TeamColor color,
+                                             ChessPiece.PieceType type, int from, int to) {
+        long candidates = Bitboards.attacks(type, to, board.occupied()) & board.pieces(color, type) & ~Bitboards.bit(from);
+        long rivals = 0L;
+        int flags = (board.getPiece(to) != null) ? PackedMove.CAPTURE : 0;
+        while (candidates != 0) {
+            int other = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            int move = PackedMove.encode(other, to, flags);
+            board.makeMove(move);
+            if (!board.isInCheck(color)) {
+                rivals |= Bitboards.bit(other);
+            }
+            board.unmakeMove(move);
+        }
+        if (rivals == 0) {
+            return;
+        }
+        long fileOfFrom = Bitboards.FILE_A << (from & 7);
+        long rankOfFrom = Bitboards.RANK_1 << (from & ~7);
+        if ((rivals & fileOfFrom) == 0) {
+            sb.append(Squares.file(from));
+        } else if ((rivals & rankOfFrom) == 0) {
+            sb.append(Squares.rank(from));
+        } else {
+            sb.append(Squares.name(from));
+        }
+    }
+
+    /**
+     * Reads a move in SAN for the side to move in the game. Check, mate and
+     * annotation marks at the end are ignored, and castling may be written
+     * with letter O or digit 0.
+     *
+     * @throws IllegalArgumentException if the text is not SAN, or does not
+     * name exactly one legal move
+     */
+    public static ChessMove parse(ChessGame game, CharSequence san) {
+        return parse(game, san, MOVES.get());
+    }
+
+    /**
+     * Reads a move in SAN for the side to move, as {@link #parse(ChessGame, CharSequence)}
+     *
+     * @param moves a list to generate the legal moves into, cleared first
+     */
+    public static ChessMove parse(ChessGame game, CharSequence san, MoveList moves) {
+        ChessGame.TeamColor color = game.getTeamTurn();
+        if (color == null) {
+            throw new IllegalArgumentException("The game is over");
+        }
+        ChessBoard board = game.getBoard();
+
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+
+        ChessPiece.PieceType type = ChessPiece.PieceType.PAWN;
+        ChessPiece.PieceType promotion = null;
+        int target;
+        int fromFile = -1;
+        int fromRank = -1;
+        int castle = castleSide(san, end);
+        if (castle != 0) {
+            int row = (color == ChessGame.TeamColor.WHITE) ? 1 : 8;
+            type = ChessPiece.PieceType.KING;
+            fromFile = 4;
+            target = Bitboards.square(row, castle > 0 ? 7 : 3);
+        } else {
+            int start = 0;
+            int pieceIndex = (end > 0) ? LETTERS.indexOf(san.charAt(0)) : -1;
+            if (pieceIndex >= 0 && TYPES[pieceIndex] != ChessPiece.PieceType.PAWN) {
+                type = TYPES[pieceIndex];
+                start = 1;
+            }
+            // Promotion, written e8=Q or e8Q
+            if (type == ChessPiece.PieceType.PAWN && end >= 3) {
+                int letterIndex = LETTERS.indexOf(san.charAt(end - 1));
+                if (letterIndex >= 0 && letterIndex != ChessPiece.PieceType.PAWN.ordinal()
+                        && letterIndex != ChessPiece.PieceType.KING.ordinal()) {
+                    promotion = TYPES[letterIndex];
+                    end -= (san.charAt(end - 2) == '=') ? 2 : 1;
+                }
+            }
+            target = Squares.parse(san, end - 2);
+            if (target == Bitboards.NO_SQUARE) {
+                throw new IllegalArgumentException("Not a SAN move: " + san);
+            }
+            for (int i = start; i < end - 2; i++) {
+                char c = san.charAt(i);
+                if (c >= 'a' && c <= 'h') {
+                    fromFile = c - 'a';
+                } else if (c >= '1' && c <= '8') {
+                    fromRank = c - '1';
+                } else if (c != 'x' && c != ':') {
+                    throw new IllegalArgumentException("Not a SAN move: " + san);
+                }
+            }
+        }
+
+        moves.clear();
+        MoveGenerator.generateLegalMoves(board, color, moves);
+        int match = PackedMove.NONE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int from = PackedMove.from(move);
+            if (PackedMove.to(move) != target
+                    || board.getPiece(from).getPieceType() != type
+                    || PackedMove.promotion(move) != promotion
+                    || (fromFile >= 0 && (from & 7) != fromFile)
+                    || (fromRank >= 0 && (from >>> 3) != fromRank)) {
+                continue;
+            }
+            if (match != PackedMove.NONE) {
+                throw new IllegalArgumentException("Ambiguous move: " + san);
+            }
+            match = move;
+        }
+        if (match == PackedMove.NONE) {
+            throw new IllegalArgumentException("No legal move matches: " + san);
+        }
+        return PackedMove.toChessMove(match);
+    }
+
+    // 1 for kingside, -1 for queenside, 0 if the text is not a castle
+    private static int castleSide(CharSequence san, int end) {
+        if (end != 3 && end != 5) {
+            return 0;
+        }
+        char o = san.charAt(0);
+        if (o != 'O' && o != '0') {
+            return 0;
+        }
+        for (int i = 0; i < end; i++) {
+            char c = san.charAt(i);
+            if (c != ((i % 2 == 0) ? o : '-')) {
+                return 0;
+            }
+        }
+        return (end == 3) ? 1 : -1;
+    }
+
+    /**
+     * @return the upper case letter for a piece type, {@code P} for a pawn
+     */
+    static char letter(ChessPiece.PieceType type) {
+        return LETTERS.charAt(type.ordinal());
+    }
+}
@@ -0,0 +1,64 @@
+package chess.notation;
+
+import chess.Bitboards;
+import chess.ChessPosition;
+
+/**
+ * Algebraic square names ({@code a1} through {@code h8}), built once so
+ * formatting a square never allocates.
+ */
+public final class Squares {
+    private static final String[] NAMES = new String[64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            NAMES[sq] = new String(new char[]{file(sq), rank(sq)});
+        }
+    }
+
+    private Squares() {
+    }
+
+    /**
+     * @return the name of a square index, such as {@code e4}
+     */
+    public static String name(int square) {
+        return NAMES[square];
+    }
+
+    public static String name(ChessPosition position) {
+        return NAMES[Bitboards.square(position)];
+    }
+
+    /**
+     * @return the file letter ({@code a}-{@code h}) of a square index
+     */
+    public static char file(int square) {
+        return (char) ('a' + (square & 7));
+    }
+
+    /**
+     * @return the rank digit ({@code 1}-{@code 8}) of a square index
+     */
+    public static char rank(int square) {
+        return (char) ('1' + (square >>> 3));
+    }
+
+    /**
+     * Reads a square name starting at {@code index}
+     *
+     * @return the square index, or {@link Bitboards#NO_SQUARE} if the two
+     * characters there are not a square name
+     */
+    public static int parse(CharSequence text, int index) {
+        if (index < 0 || index + 1 >= text.length()) {
+            return Bitboards.NO_SQUARE;
+        }
+        int file = text.charAt(index) - 'a';
+        int rank = text.charAt(index + 1) - '1';
+        if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+            return Bitboards.NO_SQUARE;
+        }
+        return rank * 8 + file;
+    }
+}
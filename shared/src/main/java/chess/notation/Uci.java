@@ -0,0 +1,89 @@
+package chess.notation;
+
+import chess.Bitboards;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.PackedMove;
+
+/**
+ * Long algebraic move notation as used by the UCI protocol: the start
+ * square, the end square and, for a promotion, the piece letter, as in
+ * {@code e2e4} or {@code e7e8q}. Castling is written as the king's move,
+ * {@code e1g1}.
+ * <p>
+ * Parsing reads characters in place and returns moves built on the shared
+ * ChessPosition instances, so nothing but the returned move is allocated.
+ */
+public final class Uci {
+    private Uci() {
+    }
+
+    /**
+     * @return the move in UCI notation
+     */
+    public static String format(ChessMove move) {
+        return appendTo(new StringBuilder(5), move).toString();
+    }
+
+    public static String format(int packedMove) {
+        return appendTo(new StringBuilder(5), packedMove).toString();
+    }
+
+    /**
+     * Appends the move in UCI notation to a caller-supplied builder
+     *
+     * @return the same builder
+     */
+    public static StringBuilder appendTo(StringBuilder sb, ChessMove move) {
+        return append(sb, Bitboards.square(move.getStartPosition()), Bitboards.square(move.getEndPosition()),
+                move.getPromotionPiece());
+    }
+
+    public static StringBuilder appendTo(StringBuilder sb, int packedMove) {
+        return append(sb, PackedMove.from(packedMove), PackedMove.to(packedMove), PackedMove.promotion(packedMove));
+    }
+
+    private static StringBuilder append(StringBuilder sb, int from, int to, ChessPiece.PieceType promotion) {
+        sb.append(Squares.file(from)).append(Squares.rank(from)).append(Squares.file(to)).append(Squares.rank(to));
+        if (promotion != null) {
+            sb.append(Character.toLowerCase(San.letter(promotion)));
+        }
+        return sb;
+    }
+
+    /**
+     * @return whether the text has the shape of a UCI move
+     */
+    public static boolean isUci(CharSequence text) {
+        int length = text.length();
+        return (length == 4 || length == 5)
+                && Squares.parse(text, 0) != Bitboards.NO_SQUARE
+                && Squares.parse(text, 2) != Bitboards.NO_SQUARE
+                && (length == 4 || promotion(text.charAt(4)) != null);
+    }
+
+    /**
+     * Reads a move in UCI notation. Only the notation is checked, not
+     * whether the move is legal anywhere.
+     *
+     * @throws IllegalArgumentException if the text is not UCI notation
+     */
+    public static ChessMove parse(CharSequence text) {
+        if (!isUci(text)) {
+            throw new IllegalArgumentException("Not a UCI move: " + text);
+        }
+        ChessPiece.PieceType promotion = (text.length() == 5) ? promotion(text.charAt(4)) : null;
+        return new ChessMove(Bitboards.position(Squares.parse(text, 0)), Bitboards.position(Squares.parse(text, 2)),
+                promotion);
+    }
+
+    private static ChessPiece.PieceType promotion(char c) {
+        return switch (c) {
+            case 'q' -> ChessPiece.PieceType.QUEEN;
+            case 'r' -> ChessPiece.PieceType.ROOK;
+            case 'b' -> ChessPiece.PieceType.BISHOP;
+            case 'n' -> ChessPiece.PieceType.KNIGHT;
+            default -> null;
+        };
+    }
+}
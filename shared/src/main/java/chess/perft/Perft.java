@@ -0,0 +1,131 @@
+package chess.perft;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.MoveGenerator;
+import chess.MoveList;
+import chess.notation.Uci;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Counts the leaf positions of the legal move tree to a fixed depth
+ * ("perft"), the standard way to check a move generator against known
+ * results and to measure how fast it runs.
+ * <p>
+ * One instance keeps a {@link MoveList} per ply and plays moves with
+ * make/unmake on the board it is given, so counting does not allocate.
+ * It is not safe to share between threads.
+ */
+public class Perft {
+    private static final int MAX_DEPTH = 32;
+
+    private final MoveList[] moveLists = new MoveList[MAX_DEPTH + 1];
+
+    public Perft() {
+        for (int i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new MoveList();
+        }
+    }
+
+    /**
+     * @return the number of leaf positions {@code depth} plies below the position
+     */
+    public long count(ChessBoard board, ChessGame.TeamColor sideToMove, int depth) {
+        if (depth < 0 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Depth must be between 0 and " + MAX_DEPTH);
+        }
+        return search(board, sideToMove, depth);
+    }
+
+    public long count(ChessGame game, int depth) {
+        return count(game.getBoard(), game.getTeamTurn(), depth);
+    }
+
+    /**
+     * Splits the count by root move, the usual way to find which move a
+     * generator gets wrong by comparing against a trusted engine
+     *
+     * @return node count below each root move, keyed by UCI notation such
+     * as {@code e2e4} or {@code e7e8q}, in generation order
+     */
+    public Map<String, Long> divide(ChessBoard board, ChessGame.TeamColor sideToMove, int depth) {
+        if (depth < 1 || depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Depth must be between 1 and " + MAX_DEPTH);
+        }
+        MoveList moves = moveLists[depth];
+        moves.clear();
+        MoveGenerator.generateLegalMoves(board, sideToMove, moves);
+        ChessGame.TeamColor opponent = opponent(sideToMove);
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.makeMove(move);
+            result.put(Uci.format(move), search(board, opponent, depth - 1));
+            board.unmakeMove(move);
+        }
+        return result;
+    }
+
+    public Map<String, Long> divide(ChessGame game, int depth) {
+        return divide(game.getBoard(), game.getTeamTurn(), depth);
+    }
+
+    private long search(ChessBoard board, ChessGame.TeamColor sideToMove, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList moves = moveLists[depth];
+        moves.clear();
+        MoveGenerator.generateLegalMoves(board, sideToMove, moves);
+        if (depth == 1) {
+            // Every legal move is one leaf, no need to play them
+            return moves.size();
+        }
+        ChessGame.TeamColor opponent = opponent(sideToMove);
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.makeMove(move);
+            nodes += search(board, opponent, depth - 1);
+            board.unmakeMove(move);
+        }
+        return nodes;
+    }
+
+    /**
+     * Compares two divide results move by move
+     *
+     * @return one line per root move that is missing, unexpected or has a
+     * different count; empty when the results agree
+     */
+    public static List<String> diff(Map<String, Long> expected, Map<String, Long> actual) {
+        List<String> lines = new ArrayList<>();
+        TreeSet<String> moves = new TreeSet<>(expected.keySet());
+        moves.addAll(actual.keySet());
+        for (String move : moves) {
+            Long want = expected.get(move);
+            Long got = actual.get(move);
+            if (got == null) {
+                lines.add(move + ": missing (expected " + want + ")");
+            } else if (want == null) {
+                lines.add(move + ": not legal (counted " + got + ")");
+            } else if (!want.equals(got)) {
+                lines.add(move + ": expected " + want + ", got " + got + " (" + signed(got - want) + ")");
+            }
+        }
+        return lines;
+    }
+
+    static String signed(long value) {
+        return (value > 0) ? "+" + value : Long.toString(value);
+    }
+
+    private static ChessGame.TeamColor opponent(ChessGame.TeamColor color) {
+        return (color == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+    }
+}
@@ -0,0 +1,125 @@
+package chess.perft;
+
+import chess.ChessGame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line perft runner.
+ * <pre>
+ *   PerftMain [depth]
+ *       counts every reference position to depth (default 4) and checks the known totals
+ *   PerftMain depth (name | "fen") [--divide] [--compare file]
+ *       counts one position; --divide prints the count under each root move, and
+ *       --compare diffs that split against a file of "move: count" lines, such as
+ *       the output of another engine's perft command
+ * </pre>
+ * Exits with status 1 if any count disagrees with what was expected.
+ */
+public class PerftMain {
+    private static final int DEFAULT_DEPTH = 4;
+
+    public static void main(String[] args) throws IOException {
+        int depth = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+        boolean ok;
+        if (args.length < 2) {
+            ok = runReference(depth);
+        } else {
+            ok = runSingle(depth, args);
+        }
+        if (!ok) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean runReference(int depth) {
+        Perft perft = new Perft();
+        boolean ok = true;
+        long totalNodes = 0;
+        long totalNanos = 0;
+        for (PerftPosition position : PerftPosition.REFERENCE) {
+            ChessGame game = position.game();
+            for (int d = 1; d <= Math.min(depth, position.maxDepth()); d++) {
+                long start = System.nanoTime();
+                long nodes = perft.count(game, d);
+                long nanos = System.nanoTime() - start;
+                totalNodes += nodes;
+                totalNanos += nanos;
+                ok &= report(position.name(), d, nodes, position.expected(d), nanos);
+            }
+        }
+        System.out.printf("total %,d nodes in %.2fs, %s%n", totalNodes, totalNanos / 1e9, rate(totalNodes, totalNanos));
+        return ok;
+    }
+
+    private static boolean runSingle(int depth, String[] args) throws IOException {
+        PerftPosition position = PerftPosition.named(args[1]);
+        ChessGame game = (position != null) ? position.game() : ChessGame.fromFen(args[1]);
+        long expected = (position != null) ? position.expected(depth) : -1;
+        boolean divide = false;
+        Path compare = null;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--divide")) {
+                divide = true;
+            } else if (args[i].equals("--compare") && i + 1 < args.length) {
+                compare = Path.of(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Perft perft = new Perft();
+        long start = System.nanoTime();
+        Map<String, Long> split = perft.divide(game, depth);
+        long nanos = System.nanoTime() - start;
+        long nodes = split.values().stream().mapToLong(Long::longValue).sum();
+
+        if (divide || compare != null) {
+            split.forEach((move, count) -> System.out.println(move + ": " + count));
+            System.out.println();
+        }
+        boolean ok = report((position != null) ? position.name() : "fen", depth, nodes, expected, nanos);
+        if (compare != null) {
+            List<String> differences = Perft.diff(readDivide(compare), split);
+            differences.forEach(line -> System.out.println("  " + line));
+            ok &= differences.isEmpty();
+        }
+        return ok;
+    }
+
+    // Prints one result line; a negative expected count means there is nothing to check against
+    private static boolean report(String name, int depth, long nodes, long expected, long nanos) {
+        boolean ok = expected < 0 || nodes == expected;
+        String verdict;
+        if (expected < 0) {
+            verdict = "";
+        } else if (ok) {
+            verdict = "ok";
+        } else {
+            verdict = String.format("MISMATCH expected %,d (%s)", expected, Perft.signed(nodes - expected));
+        }
+        System.out.printf("%-10s depth %d %,15d nodes %14s  %s%n", name, depth, nodes, rate(nodes, nanos), verdict);
+        return ok;
+    }
+
+    private static String rate(long nodes, long nanos) {
+        return String.format("%,d nps", nodes * 1_000_000_000L / Math.max(nanos, 1));
+    }
+
+    // Reads "move: count" lines, skipping anything else such as a trailing total
+    private static Map<String, Long> readDivide(Path file) throws IOException {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            String[] parts = line.split(":");
+            if (parts.length == 2 && parts[0].trim().matches("[a-h][1-8][a-h][1-8][qrbn]?")) {
+                result.put(parts[0].trim(), Long.parseLong(parts[1].trim()));
+            }
+        }
+        return result;
+    }
+}
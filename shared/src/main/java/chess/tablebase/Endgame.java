@@ -0,0 +1,79 @@
+package chess.tablebase;
+
+import chess.ChessPiece;
+
+/**
+ * The material sets with tablebases: a king and one or two pieces against
+ * a bare king.
+ * <p>
+ * Tables are stored with white as the stronger side. A position is indexed
+ * by side to move (0 for white, 1 for black), then white king, black king
+ * and white pieces' squares in the order listed here, six bits each, so
+ * every placement has a slot whether or not it is legal.
+ */
+public enum Endgame {
+    KQK(ChessPiece.PieceType.QUEEN),
+    KRK(ChessPiece.PieceType.ROOK),
+    KPK(ChessPiece.PieceType.PAWN),
+    KBNK(ChessPiece.PieceType.BISHOP, ChessPiece.PieceType.KNIGHT);
+
+    private final ChessPiece.PieceType[] pieces;
+
+    Endgame(ChessPiece.PieceType... pieces) {
+        this.pieces = pieces;
+    }
+
+    /**
+     * @return the stronger side's pieces besides its king, in index order
+     */
+    public ChessPiece.PieceType[] pieces() {
+        return pieces.clone();
+    }
+
+    int pieceCount() {
+        return pieces.length;
+    }
+
+    ChessPiece.PieceType piece(int i) {
+        return pieces[i];
+    }
+
+    /**
+     * @return the number of slots in the table, one per side to move and placement
+     */
+    public int size() {
+        return 1 << (13 + 6 * pieces.length);
+    }
+
+    /**
+     * @return the name of this endgame's table file
+     */
+    public String fileName() {
+        return name() + ".dtm";
+    }
+
+    /**
+     * @param whiteToMove true if the stronger side is to move
+     * @param squares     white king, black king, then white's pieces in index order
+     */
+    int index(boolean whiteToMove, int[] squares) {
+        int index = whiteToMove ? 0 : 1;
+        for (int i = 0; i < 2 + pieces.length; i++) {
+            index = (index << 6) | squares[i];
+        }
+        return index;
+    }
+
+    /**
+     * Fills {@code squares} from an index, the reverse of {@link #index}
+     *
+     * @return true if the stronger side is to move
+     */
+    boolean decode(int index, int[] squares) {
+        for (int i = 1 + pieces.length; i >= 0; i--) {
+            squares[i] = index & 63;
+            index >>>= 6;
+        }
+        return index == 0;
+    }
+}
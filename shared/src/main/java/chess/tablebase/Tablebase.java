@@ -0,0 +1,203 @@
+package chess.tablebase;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.MoveGenerator;
+import chess.MoveList;
+import chess.PackedMove;
+import chess.engine.Engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Perfect play for the endgames in {@link Endgame}: how many plies until
+ * mate, or that the position is drawn, for any position with that
+ * material.
+ * <p>
+ * Each table holds one byte per slot: 0 for a draw, 255 for a placement
+ * that cannot occur, otherwise one more than the number of plies until the
+ * stronger side mates with best play from both sides. Table files are
+ * memory-mapped, so they are shared through the page cache by every game on
+ * the server and a probe only computes an index and reads a byte. Instances
+ * are safe to share between threads.
+ */
+public final class Tablebase {
+    /** Probe result when no table covers the position */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+    /** Score of a side that mates now; mate n plies later scores MATE - n, as in the engine */
+    public static final int MATE = Engine.MATE;
+
+    static final byte DRAW = 0;
+    static final byte ILLEGAL = (byte) 255;
+
+    private final Map<Endgame, ByteBuffer> tables;
+
+    Tablebase(Map<Endgame, ByteBuffer> tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Maps every table file found in the directory; endgames without a file
+     * are simply not covered
+     *
+     * @throws IOException if a table file cannot be read or has the wrong size
+     */
+    public static Tablebase open(Path directory) throws IOException {
+        Map<Endgame, ByteBuffer> tables = new EnumMap<>(Endgame.class);
+        for (Endgame endgame : Endgame.values()) {
+            Path file = directory.resolve(endgame.fileName());
+            if (!Files.exists(file)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() != endgame.size()) {
+                    throw new IOException("Table " + file + " should be " + endgame.size() + " bytes");
+                }
+                tables.put(endgame, channel.map(FileChannel.MapMode.READ_ONLY, 0, endgame.size()));
+            }
+        }
+        return new Tablebase(tables);
+    }
+
+    /**
+     * @return true if a table for the endgame is loaded
+     */
+    public boolean covers(Endgame endgame) {
+        return tables.containsKey(endgame);
+    }
+
+    /**
+     * Looks up the game's current position
+     *
+     * @return as {@link #probe(ChessBoard, ChessGame.TeamColor)}, or NOT_FOUND if the game is over
+     */
+    public int probe(ChessGame game) {
+        return (game.getTeamTurn() == null) ? NOT_FOUND : probe(game.getBoard(), game.getTeamTurn());
+    }
+
+    /**
+     * Looks up a position. Positions with bare kings, or a lone bishop or
+     * knight against a bare king, are draws without needing a table.
+     *
+     * @return {@code MATE - n} if the side to move mates in n plies,
+     * {@code -(MATE - n)} if it is mated in n plies, 0 for a draw, or
+     * {@link #NOT_FOUND} if no loaded table covers the material or castling
+     * is still possible
+     */
+    public int probe(ChessBoard board, ChessGame.TeamColor sideToMove) {
+        long occupied = board.occupied();
+        int count = Long.bitCount(occupied);
+        if (count == 2) {
+            return 0;
+        }
+        if (count > 4 || board.getCastlingRights() != 0) {
+            return NOT_FOUND;
+        }
+        ChessGame.TeamColor strong;
+        if (Long.bitCount(board.pieces(ChessGame.TeamColor.BLACK)) == 1) {
+            strong = ChessGame.TeamColor.WHITE;
+        } else if (Long.bitCount(board.pieces(ChessGame.TeamColor.WHITE)) == 1) {
+            strong = ChessGame.TeamColor.BLACK;
+        } else {
+            return NOT_FOUND;
+        }
+        ChessGame.TeamColor weak = (strong == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        long minors = board.pieces(strong, ChessPiece.PieceType.BISHOP) | board.pieces(strong, ChessPiece.PieceType.KNIGHT);
+        if (count == 3 && minors != 0) {
+            // A single minor piece cannot mate
+            return 0;
+        }
+
+        Endgame endgame = match(board, strong, count - 2);
+        ByteBuffer table = (endgame == null) ? null : tables.get(endgame);
+        if (table == null) {
+            return NOT_FOUND;
+        }
+        // Tables have white as the stronger side, so a stronger black is read with the board flipped
+        int flip = (strong == ChessGame.TeamColor.WHITE) ? 0 : 56;
+        int index = (sideToMove == strong) ? 0 : 1;
+        index = (index << 6) | (board.getKingSquare(strong) ^ flip);
+        index = (index << 6) | (board.getKingSquare(weak) ^ flip);
+        for (int i = 0; i < endgame.pieceCount(); i++) {
+            index = (index << 6) | (Long.numberOfTrailingZeros(board.pieces(strong, endgame.piece(i))) ^ flip);
+        }
+        return score(table.get(index), sideToMove == strong);
+    }
+
+    /**
+     * Finds the move with the best outcome: the fastest mate when winning,
+     * the slowest when losing, and any drawing move otherwise
+     *
+     * @return the move, or null if the game is over or not every reply is covered
+     */
+    public ChessMove bestMove(ChessGame game) {
+        ChessGame.TeamColor side = game.getTeamTurn();
+        if (side == null || probe(game) == NOT_FOUND) {
+            return null;
+        }
+        ChessBoard board = new ChessBoard(game.getBoard());
+        ChessGame.TeamColor opponent = (side == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegalMoves(board, side, moves);
+        int best = PackedMove.NONE;
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            board.makeMove(move);
+            int reply = probe(board, opponent);
+            board.unmakeMove(move);
+            if (reply == NOT_FOUND) {
+                return null;
+            }
+            if (-reply > bestScore) {
+                bestScore = -reply;
+                best = move;
+            }
+        }
+        return (best == PackedMove.NONE) ? null : PackedMove.toChessMove(best);
+    }
+
+    /**
+     * @return plies until mate for a probe result, or -1 for a draw
+     */
+    public static int pliesToMate(int score) {
+        return (score == 0 || score == NOT_FOUND) ? -1 : MATE - Math.abs(score);
+    }
+
+    // The endgame whose pieces the stronger side has exactly, one of each
+    private static Endgame match(ChessBoard board, ChessGame.TeamColor strong, int pieceCount) {
+        for (Endgame endgame : Endgame.values()) {
+            if (endgame.pieceCount() != pieceCount) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < pieceCount && matches; i++) {
+                matches = Long.bitCount(board.pieces(strong, endgame.piece(i))) == 1;
+            }
+            if (matches) {
+                return endgame;
+            }
+        }
+        return null;
+    }
+
+    static int score(byte value, boolean strongToMove) {
+        if (value == DRAW) {
+            return 0;
+        }
+        if (value == ILLEGAL) {
+            return NOT_FOUND;
+        }
+        int plies = (value & 0xFF) - 1;
+        return strongToMove ? MATE - plies : -(MATE - plies);
+    }
+}
@@ -0,0 +1,371 @@
+package chess.tablebase;
+
+import chess.Bitboards;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.MoveGenerator;
+import chess.MoveList;
+import chess.PackedMove;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Builds endgame tables by retrograde analysis.
+ * <p>
+ * Every slot starts as a draw. Positions where black is checkmated are
+ * found first; then round n takes every position that is mated or mates in
+ * exactly n plies and un-makes moves from it. A white position one un-move
+ * before a black loss wins in n + 1. A black position one un-move before a
+ * white win loses in n + 1 only if every one of its moves reaches a white
+ * win, which is checked by generating its moves on a board. Rounds stop once
+ * one finds nothing, and whatever is left unresolved is a draw. Pawn
+ * promotions leave the table, so their results come from the tables
+ * generated before it and enter the rounds when their mate length comes up.
+ * <p>
+ * Each pass splits the table into ranges on a {@link ForkJoinPool}. A pass
+ * only writes the value of the round it is in and only where a slot was
+ * still unresolved, so workers racing on one slot write the same byte and
+ * need no locking. Workers also read slots that others may be resolving in
+ * the same round, so a black move only counts as reaching a white win if
+ * that win was resolved before this round's new values; a successor being
+ * written concurrently is ignored whichever order the workers run in, and
+ * the table comes out the same on any number of threads.
+ */
+public class TablebaseGenerator {
+    private static final int CHUNK = 1 << 16;
+    private static final int MAX_VALUE = 254;
+
+    private final ForkJoinPool pool;
+    private final Map<Endgame, ByteBuffer> generated = new EnumMap<>(Endgame.class);
+
+    public TablebaseGenerator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public TablebaseGenerator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Supplies a table for promotions to use, such as one read from disk
+     */
+    public void add(Endgame endgame, byte[] table) {
+        generated.put(endgame, ByteBuffer.wrap(table));
+    }
+
+    /**
+     * @return a tablebase probing every table generated or added so far
+     */
+    public Tablebase tablebase() {
+        return new Tablebase(new EnumMap<>(generated));
+    }
+
+    /**
+     * Generates a table, keeping it for promotions in tables generated after it
+     *
+     * @throws IllegalStateException if a pawn endgame is generated before the tables it promotes into
+     */
+    public byte[] generate(Endgame endgame) {
+        boolean pawns = endgame.pieceCount() == 1 && endgame.piece(0) == ChessPiece.PieceType.PAWN;
+        if (pawns && !(generated.containsKey(Endgame.KQK) && generated.containsKey(Endgame.KRK))) {
+            throw new IllegalStateException(endgame + " needs KQK and KRK to be generated first");
+        }
+        Generation generation = new Generation(endgame, tablebase(), pawns);
+        pool.invoke(new Pass(generation, 0, endgame.size(), Generation.INITIALIZE, 0));
+
+        int latestExit = 0;
+        if (pawns) {
+            for (byte exit : generation.exits) {
+                latestExit = Math.max(latestExit, exit & 0xFF);
+            }
+        }
+        for (int plies = 0; ; plies++) {
+            if (plies + 2 > MAX_VALUE) {
+                throw new IllegalStateException(endgame + " has mates longer than a table can hold");
+            }
+            if (pawns && plies + 1 <= latestExit) {
+                pool.invoke(new Pass(generation, 0, endgame.size(), Generation.PROMOTE, plies));
+            }
+            generation.found.reset();
+            pool.invoke(new Pass(generation, 0, endgame.size(), Generation.RETRACT, plies));
+            if (generation.found.sum() == 0 && plies + 1 >= latestExit) {
+                break;
+            }
+        }
+        generated.put(endgame, ByteBuffer.wrap(generation.values));
+        return generation.values;
+    }
+
+    /**
+     * Writes a table where {@link Tablebase#open} will find it
+     */
+    public static void write(Endgame endgame, byte[] table, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(endgame.fileName()), table);
+    }
+
+    // The state of one table's generation, shared by every pass
+    private static final class Generation {
+        static final int INITIALIZE = 0;
+        static final int PROMOTE = 1;
+        static final int RETRACT = 2;
+
+        final Endgame endgame;
+        final Tablebase lower;
+        final byte[] values;
+        // For white to move in a pawn endgame, the table value of the best promotion
+        final byte[] exits;
+        final LongAdder found = new LongAdder();
+
+        Generation(Endgame endgame, Tablebase lower, boolean pawns) {
+            this.endgame = endgame;
+            this.lower = lower;
+            this.values = new byte[endgame.size()];
+            this.exits = pawns ? new byte[endgame.size()] : null;
+        }
+    }
+
+    // ForkJoinTask is Serializable, but passes only ever run inside the pool
+    @SuppressWarnings("serial")
+    private static final class Pass extends RecursiveAction {
+        private final Generation generation;
+        private final int from;
+        private final int to;
+        private final int kind;
+        private final int plies;
+
+        Pass(Generation generation, int from, int to, int kind, int plies) {
+            this.generation = generation;
+            this.from = from;
+            this.to = to;
+            this.kind = kind;
+            this.plies = plies;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Pass(generation, from, mid, kind, plies), new Pass(generation, mid, to, kind, plies));
+                return;
+            }
+            Worker worker = new Worker(generation);
+            for (int index = from; index < to; index++) {
+                switch (kind) {
+                    case Generation.INITIALIZE -> worker.initialize(index);
+                    case Generation.PROMOTE -> worker.promote(index, plies);
+                    default -> worker.retract(index, plies);
+                }
+            }
+        }
+    }
+
+    // Per-task scratch state: a board to generate moves on and the squares of the position being looked at
+    private static final class Worker {
+        private static final ChessPiece WHITE_KING = new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING);
+        private static final ChessPiece BLACK_KING = new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING);
+
+        private final Generation generation;
+        private final Endgame endgame;
+        private final byte[] values;
+        private final ChessPiece[] pieces;
+        private final int[] squares;
+        private final ChessBoard board = new ChessBoard();
+        private final MoveList moves = new MoveList();
+        private long placed;
+
+        Worker(Generation generation) {
+            this.generation = generation;
+            this.endgame = generation.endgame;
+            this.values = generation.values;
+            this.squares = new int[2 + endgame.pieceCount()];
+            this.pieces = new ChessPiece[2 + endgame.pieceCount()];
+            pieces[0] = WHITE_KING;
+            pieces[1] = BLACK_KING;
+            for (int i = 0; i < endgame.pieceCount(); i++) {
+                pieces[2 + i] = new ChessPiece(ChessGame.TeamColor.WHITE, endgame.piece(i));
+            }
+            board.setCastlingRights(0);
+        }
+
+        void initialize(int index) {
+            boolean whiteToMove = endgame.decode(index, squares);
+            long occupancy = 0;
+            for (int square : squares) {
+                occupancy |= Bitboards.bit(square);
+            }
+            if (Long.bitCount(occupancy) != squares.length
+                    || (Bitboards.kingAttacks(squares[0]) & Bitboards.bit(squares[1])) != 0
+                    || ((occupancy & pawns()) & (Bitboards.RANK_1 | Bitboards.RANK_8)) != 0) {
+                values[index] = Tablebase.ILLEGAL;
+                return;
+            }
+            setUp();
+            if (whiteToMove) {
+                if (board.isInCheck(ChessGame.TeamColor.BLACK)) {
+                    values[index] = Tablebase.ILLEGAL;
+                } else if (generation.exits != null) {
+                    generation.exits[index] = bestPromotion();
+                }
+                return;
+            }
+            moves.clear();
+            MoveGenerator.generateLegalMoves(board, ChessGame.TeamColor.BLACK, moves);
+            if (moves.isEmpty() && board.isInCheck(ChessGame.TeamColor.BLACK)) {
+                values[index] = 1;
+            }
+        }
+
+        /**
+         * Resolves a white position whose fastest mate is by promoting in
+         * {@code plies} plies, before that round's retraction reads it
+         */
+        void promote(int index, int plies) {
+            if (values[index] == Tablebase.DRAW && (generation.exits[index] & 0xFF) == plies + 1) {
+                values[index] = (byte) (plies + 1);
+            }
+        }
+
+        /**
+         * Un-makes moves from a position resolved in exactly {@code plies}
+         * plies, resolving its predecessors in one more
+         */
+        void retract(int index, int plies) {
+            byte value = values[index];
+            byte next = (byte) (plies + 2);
+            boolean whiteToMove = endgame.decode(index, squares);
+            if ((value & 0xFF) != plies + 1) {
+                return;
+            }
+            generation.found.increment();
+            long occupancy = 0;
+            for (int square : squares) {
+                occupancy |= Bitboards.bit(square);
+            }
+            if (!whiteToMove) {
+                // Black is lost here, so any white move into it wins
+                for (int i = 0; i < squares.length; i++) {
+                    if (i == 1) {
+                        continue;
+                    }
+                    int from = squares[i];
+                    long origins = unmoves(pieces[i].getPieceType(), from, occupancy);
+                    while (origins != 0) {
+                        squares[i] = Long.numberOfTrailingZeros(origins);
+                        origins &= origins - 1;
+                        int predecessor = endgame.index(true, squares);
+                        if (values[predecessor] == Tablebase.DRAW) {
+                            values[predecessor] = next;
+                        }
+                    }
+                    squares[i] = from;
+                }
+                return;
+            }
+            // White wins here, so a black king move into it loses if all of black's other moves do too
+            int from = squares[1];
+            long origins = Bitboards.kingAttacks(from) & ~occupancy;
+            while (origins != 0) {
+                squares[1] = Long.numberOfTrailingZeros(origins);
+                origins &= origins - 1;
+                int predecessor = endgame.index(false, squares);
+                if (values[predecessor] == Tablebase.DRAW && allMovesLose(plies)) {
+                    values[predecessor] = next;
+                }
+            }
+            squares[1] = from;
+        }
+
+        // True if every black move from the position in squares reaches a white win resolved in at most
+        // plies + 1; wins other workers are writing this round, in plies + 2, must not count yet
+        private boolean allMovesLose(int plies) {
+            setUp();
+            moves.clear();
+            MoveGenerator.generateLegalMoves(board, ChessGame.TeamColor.BLACK, moves);
+            int king = squares[1];
+            boolean lost = true;
+            for (int i = 0; i < moves.size() && lost; i++) {
+                int move = moves.get(i);
+                if (PackedMove.isCapture(move)) {
+                    lost = false;
+                } else {
+                    squares[1] = PackedMove.to(move);
+                    byte value = values[endgame.index(true, squares)];
+                    lost = value != Tablebase.DRAW && value != Tablebase.ILLEGAL && (value & 0xFF) <= plies + 1;
+                }
+            }
+            squares[1] = king;
+            return lost;
+        }
+
+        // Table value of white's fastest promotion to a lost position for black, or 0 if none wins
+        private byte bestPromotion() {
+            moves.clear();
+            MoveGenerator.generateLegalMoves(board, ChessGame.TeamColor.WHITE, moves);
+            int best = 0;
+            for (int i = 0; i < moves.size(); i++) {
+                int move = moves.get(i);
+                if (!PackedMove.isPromotion(move)) {
+                    continue;
+                }
+                board.makeMove(move);
+                int score = generation.lower.probe(board, ChessGame.TeamColor.BLACK);
+                board.unmakeMove(move);
+                if (score != Tablebase.NOT_FOUND && score < 0) {
+                    // Black is mated in (MATE + score) plies after the promotion
+                    int value = Tablebase.MATE + score + 2;
+                    if (best == 0 || value < best) {
+                        best = value;
+                    }
+                }
+            }
+            return (byte) best;
+        }
+
+        // Squares a white piece on the given square could have moved from
+        private static long unmoves(ChessPiece.PieceType type, int square, long occupancy) {
+            if (type != ChessPiece.PieceType.PAWN) {
+                return Bitboards.attacks(type, square, occupancy) & ~occupancy;
+            }
+            long origins = 0;
+            int row = square >>> 3;
+            if (row >= 2 && (occupancy & Bitboards.bit(square - 8)) == 0) {
+                origins |= Bitboards.bit(square - 8);
+                if (row == 3 && (occupancy & Bitboards.bit(square - 16)) == 0) {
+                    origins |= Bitboards.bit(square - 16);
+                }
+            }
+            return origins;
+        }
+
+        private long pawns() {
+            long pawns = 0;
+            for (int i = 2; i < squares.length; i++) {
+                if (pieces[i].getPieceType() == ChessPiece.PieceType.PAWN) {
+                    pawns |= Bitboards.bit(squares[i]);
+                }
+            }
+            return pawns;
+        }
+
+        private void setUp() {
+            while (placed != 0) {
+                board.removePiece(Bitboards.position(Long.numberOfTrailingZeros(placed)));
+                placed &= placed - 1;
+            }
+            for (int i = 0; i < squares.length; i++) {
+                board.addPiece(Bitboards.position(squares[i]), pieces[i]);
+                placed |= Bitboards.bit(squares[i]);
+            }
+        }
+    }
+}
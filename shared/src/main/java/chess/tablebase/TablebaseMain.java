@@ -0,0 +1,61 @@
+package chess.tablebase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Command line tablebase generator.
+ * <pre>
+ *   TablebaseMain directory
+ *       generates every endgame in {@link Endgame} into the directory,
+ *       loading any table already there instead of generating it again
+ * </pre>
+ */
+public class TablebaseMain {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: TablebaseMain directory");
+            System.exit(2);
+        }
+        Path directory = Path.of(args[0]);
+        TablebaseGenerator generator = new TablebaseGenerator();
+        // Declaration order has every endgame after the ones its promotions reach
+        for (Endgame endgame : Endgame.values()) {
+            Path file = directory.resolve(endgame.fileName());
+            if (Files.exists(file)) {
+                generator.add(endgame, Files.readAllBytes(file));
+                System.out.printf("%s: loaded %s%n", endgame, file);
+                continue;
+            }
+            long start = System.nanoTime();
+            byte[] table = generator.generate(endgame);
+            TablebaseGenerator.write(endgame, table, directory);
+            System.out.printf("%s: %s in %.2fs, longest mate %d plies%n",
+                    endgame, summarize(table), (System.nanoTime() - start) / 1e9, longestMate(table));
+        }
+    }
+
+    private static String summarize(byte[] table) {
+        long wins = 0;
+        long draws = 0;
+        for (byte value : table) {
+            if (value == Tablebase.DRAW) {
+                draws++;
+            } else if (value != Tablebase.ILLEGAL) {
+                wins++;
+            }
+        }
+        return String.format("%,d won and %,d drawn positions", wins, draws);
+    }
+
+    private static int longestMate(byte[] table) {
+        int longest = 0;
+        for (byte value : table) {
+            if (value != Tablebase.ILLEGAL) {
+                longest = Math.max(longest, (value & 0xFF) - 1);
+            }
+        }
+        return longest;
+    }
+}
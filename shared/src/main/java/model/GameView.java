@@ -0,0 +1,16 @@
+package model;
+
+import chess.PositionSnapshot;
+
+/**
+ * A game as readers see it: the players and the latest published position,
+ * which can be read or serialized on any thread without copying the game.
+ * It is written to JSON in the same form as {@link GameData}.
+ */
+public record GameView(int gameID, String whiteUsername, String blackUsername, String gameName, PositionSnapshot game) {
+
+    @Override
+    public String toString() {
+        return "{gameID=" + gameID + ", gameName='" + gameName + "', whiteUsername='" + whiteUsername + "', blackUsername='" + blackUsername + "'}";
+    }
+}
@@ -1,6 +1,6 @@
 package result;
 
-import model.GameData;
+import model.GameView;
 
 import java.util.Collection;
 
@@ -8,14 +8,14 @@ public class ListGamesResult extends ErrorResponse {
 
 
 
-    Collection<GameData> games;
+    Collection<GameView> games;
 
-    public ListGamesResult(String message, Collection<GameData> games) {
+    public ListGamesResult(String message, Collection<GameView> games) {
         super(message);
         this.games = games;
     }
 
-    public Collection<GameData> getGames() {
+    public Collection<GameView> getGames() {
         return games;
     }
 }
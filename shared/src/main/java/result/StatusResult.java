@@ -0,0 +1,28 @@
+package result;
+
+public class StatusResult {
+    // Sessions connected to at least one game over WebSocket
+    int connectedSessions;
+    // Messages waiting to be written across every connection
+    int queuedMessages;
+    // Games with commands waiting or running
+    int activeGames;
+
+    public StatusResult(int connectedSessions, int queuedMessages, int activeGames) {
+        this.connectedSessions = connectedSessions;
+        this.queuedMessages = queuedMessages;
+        this.activeGames = activeGames;
+    }
+
+    public int getConnectedSessions() {
+        return connectedSessions;
+    }
+
+    public int getQueuedMessages() {
+        return queuedMessages;
+    }
+
+    public int getActiveGames() {
+        return activeGames;
+    }
+}
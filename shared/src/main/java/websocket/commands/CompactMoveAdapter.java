@@ -0,0 +1,54 @@
+package websocket.commands;
+
+import chess.ChessMove;
+import chess.notation.Uci;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Writes a move as its UCI string ({@code "e2e4"}, {@code "e7e8q"}) and reads
+ * either that string or the full ChessMove object, so older clients that
+ * send the object form keep working.
+ */
+public class CompactMoveAdapter implements TypeAdapterFactory {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (type.getRawType() != ChessMove.class) {
+            return null;
+        }
+        // The annotation is on the field, not the class, so this is the plain reflective adapter
+        TypeAdapter<ChessMove> objectForm = gson.getAdapter(ChessMove.class);
+        return (TypeAdapter<T>) new TypeAdapter<ChessMove>() {
+            @Override
+            public void write(JsonWriter out, ChessMove move) throws IOException {
+                if (move == null) {
+                    out.nullValue();
+                } else {
+                    out.value(Uci.format(move));
+                }
+            }
+
+            @Override
+            public ChessMove read(JsonReader in) throws IOException {
+                JsonToken token = in.peek();
+                if (token == JsonToken.NULL) {
+                    in.nextNull();
+                    return null;
+                }
+                if (token == JsonToken.STRING) {
+                    return Uci.parse(in.nextString());
+                }
+                return objectForm.read(in);
+            }
+        };
+    }
+}
@@ -1,9 +1,12 @@
 package websocket.commands;
 
 import chess.ChessMove;
+import com.google.gson.annotations.JsonAdapter;
 
 public class MakeMoveCommand extends UserGameCommand{
 
+    // Sent as a UCI string such as "e2e4"; the full ChessMove object is still accepted
+    @JsonAdapter(CompactMoveAdapter.class)
     private final ChessMove move;
     public MakeMoveCommand(String authToken, int gameID, ChessMove move) {
         super(authToken, gameID);
@@ -1,17 +1,33 @@
 package websocket.messages;
 
 import chess.ChessGame;
+import chess.PositionSnapshot;
 
 public class LoadGameMessage extends ServerMessage{
 
-    private final ChessGame game;
+    // Written in the same JSON form as a game, so clients read it as one
+    private final PositionSnapshot game;
     public LoadGameMessage(ServerMessageType type, ChessGame game) {
+        this(type, game == null ? null : game.snapshot());
+    }
+
+    /**
+     * Sends a published position as it is, so broadcasting never copies the game
+     */
+    public LoadGameMessage(ServerMessageType type, PositionSnapshot game) {
         super(type);
         this.serverMessageType = ServerMessageType.LOAD_GAME;
         this.game = game;
     }
 
+    /**
+     * @return a new game at the sent position, for callers that play moves on it
+     */
     public ChessGame getGame() {
+        return game == null ? null : game.toGame();
+    }
+
+    public PositionSnapshot getPosition() {
         return game;
     }
 }
@@ -0,0 +1,180 @@
+package chess;
+
+import chess.notation.Uci;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class ChessBoardTests {
+    // Castling both ways, en passant, promotions with and without capture, and checks
+    private static final String[] POSITIONS = {
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r3k2r/1P6/8/2pP4/8/8/6p1/R3K2R w KQkq c6 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+    };
+
+    @Test
+    @DisplayName("Make And Unmake Restore The Board")
+    public void makeUnmakeRestoresBoard() {
+        for (String fen : POSITIONS) {
+            ChessGame game = ChessGame.fromFen(fen);
+            walk(game.getBoard(), game.getTeamTurn(), 2, fen);
+        }
+    }
+
+    @Test
+    @DisplayName("Incremental Keys Match Recomputed Keys")
+    public void incrementalKeysMatchRecomputed() throws InvalidMoveException {
+        for (String fen : POSITIONS) {
+            ChessGame game = ChessGame.fromFen(fen);
+            for (ChessMove move : game.legalMoves()) {
+                ChessGame played = new ChessGame(game);
+                played.makeMove(move);
+                // A game read from FEN builds its key from scratch, piece by piece
+                Assertions.assertEquals(ChessGame.fromFen(played.toFen()).positionKey(), played.positionKey(),
+                        fen + " " + move);
+            }
+        }
+
+        // En passant, castling both ways, and promotions with and without capture, one after another
+        ChessGame game = ChessGame.fromFen("r3k2r/1P6/8/2pP4/8/8/6p1/R3K2R w KQkq c6 0 1");
+        for (String move : new String[] {"d5c6", "e8g8", "e1c1", "g2h1q", "b7b8n"}) {
+            game.makeMove(Uci.parse(move));
+            Assertions.assertEquals(ChessGame.fromFen(game.toFen()).positionKey(), game.positionKey(), move);
+        }
+    }
+
+    @Test
+    @DisplayName("Capturing A Rook Clears Its Castling Right")
+    public void rookCaptureClearsCastling() throws InvalidMoveException {
+        ChessGame bishop = ChessGame.fromFen("r3k2r/8/8/8/8/8/6B1/R3K2R w KQkq - 0 1");
+        bishop.makeMove(Uci.parse("g2a8"));
+        Assertions.assertEquals(ChessBoard.WHITE_KINGSIDE | ChessBoard.WHITE_QUEENSIDE | ChessBoard.BLACK_KINGSIDE,
+                bishop.getBoard().getCastlingRights());
+        Assertions.assertTrue(bishop.toFen().contains(" KQk "), bishop.toFen());
+
+        // Rook takes rook: the mover's right goes as well as the captured rook's
+        ChessGame rook = ChessGame.fromFen("r3k2r/8/8/8/8/8/6B1/R3K2R w KQkq - 0 1");
+        rook.makeMove(Uci.parse("h1h8"));
+        Assertions.assertEquals(ChessBoard.WHITE_QUEENSIDE | ChessBoard.BLACK_QUEENSIDE,
+                rook.getBoard().getCastlingRights());
+
+        ChessGame black = ChessGame.fromFen("r3k2r/6b1/8/8/8/8/8/R3K2R b KQkq - 0 1");
+        black.makeMove(Uci.parse("g7a1"));
+        Assertions.assertEquals(ChessBoard.WHITE_KINGSIDE | ChessBoard.BLACK_KINGSIDE | ChessBoard.BLACK_QUEENSIDE,
+                black.getBoard().getCastlingRights());
+        Assertions.assertThrows(InvalidMoveException.class, () -> black.makeMove(Uci.parse("e1c1")));
+    }
+
+    @Test
+    @DisplayName("Attacks Match A Square By Square Scan")
+    public void attacksMatchScan() {
+        for (String fen : POSITIONS) {
+            ChessGame game = ChessGame.fromFen(fen);
+            ChessBoard board = game.getBoard();
+            MoveList moves = new MoveList();
+            MoveGenerator.generateLegalMoves(board, game.getTeamTurn(), moves);
+            checkAttacks(board, fen);
+            for (int i = 0; i < moves.size(); i++) {
+                board.makeMove(moves.get(i));
+                checkAttacks(board, fen + " " + PackedMove.toChessMove(moves.get(i)));
+                board.unmakeMove(moves.get(i));
+            }
+        }
+    }
+
+    private static void checkAttacks(ChessBoard board, String where) {
+        for (ChessGame.TeamColor color : ChessGame.TeamColor.values()) {
+            int king = Bitboards.NO_SQUARE;
+            for (int square = 0; square < 64; square++) {
+                ChessPiece piece = board.getPiece(square);
+                if (piece != null && piece.getTeamColor() == color && piece.getPieceType() == ChessPiece.PieceType.KING) {
+                    king = square;
+                }
+                Assertions.assertEquals(scanAttacked(board, square, color), board.isSquareAttacked(square, color),
+                        where + " square " + square + " by " + color);
+            }
+            Assertions.assertEquals(king, board.getKingSquare(color), where);
+            Assertions.assertEquals(scanAttacked(board, king, MoveGenerator.opponent(color)), board.isInCheck(color), where);
+        }
+    }
+
+    // Tries every piece of the attacking team against the square, stepping along each line one square at a time
+    private static boolean scanAttacked(ChessBoard board, int square, ChessGame.TeamColor byColor) {
+        ChessPosition target = Bitboards.position(square);
+        for (int from = 0; from < 64; from++) {
+            ChessPiece piece = board.getPiece(from);
+            if (piece == null || piece.getTeamColor() != byColor || from == square) {
+                continue;
+            }
+            ChessPosition at = Bitboards.position(from);
+            int rows = target.getRow() - at.getRow();
+            int cols = target.getColumn() - at.getColumn();
+            boolean attacks = switch (piece.getPieceType()) {
+                case PAWN -> Math.abs(cols) == 1 && rows == ((byColor == ChessGame.TeamColor.WHITE) ? 1 : -1);
+                case KNIGHT -> Math.abs(rows * cols) == 2;
+                case KING -> Math.max(Math.abs(rows), Math.abs(cols)) == 1;
+                case BISHOP -> Math.abs(rows) == Math.abs(cols) && clearBetween(board, at, rows, cols);
+                case ROOK -> (rows == 0 || cols == 0) && clearBetween(board, at, rows, cols);
+                case QUEEN -> (rows == 0 || cols == 0 || Math.abs(rows) == Math.abs(cols))
+                        && clearBetween(board, at, rows, cols);
+            };
+            if (attacks) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean clearBetween(ChessBoard board, ChessPosition from, int rows, int cols) {
+        int steps = Math.max(Math.abs(rows), Math.abs(cols));
+        for (int step = 1; step < steps; step++) {
+            ChessPosition between = new ChessPosition(from.getRow() + step * Integer.signum(rows),
+                    from.getColumn() + step * Integer.signum(cols));
+            if (board.getPiece(between) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Plays and takes back every legal move down to the given depth, checking each one leaves no trace
+    private static void walk(ChessBoard board, ChessGame.TeamColor side, int depth, String fen) {
+        if (depth == 0) {
+            return;
+        }
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegalMoves(board, side, moves);
+        ChessGame.TeamColor opponent = MoveGenerator.opponent(side);
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            String before = state(board, side);
+            board.makeMove(move);
+            walk(board, opponent, depth - 1, fen);
+            board.unmakeMove(move);
+            Assertions.assertEquals(before, state(board, side), fen + " " + PackedMove.toChessMove(move));
+        }
+    }
+
+    // Everything makeMove changes, written out so a mismatch shows what differs
+    private static String state(ChessBoard board, ChessGame.TeamColor side) {
+        ChessPiece[] pieces = new ChessPiece[64];
+        for (int square = 0; square < 64; square++) {
+            pieces[square] = board.getPiece(square);
+        }
+        return Arrays.toString(pieces)
+                + " key=" + board.positionKey(side)
+                + " castling=" + board.getCastlingRights()
+                + " enPassant=" + board.getEnPassantSquare()
+                + " halfmove=" + board.getHalfmoveClock()
+                + " occupied=" + board.occupied()
+                + " white=" + board.pieces(ChessGame.TeamColor.WHITE)
+                + " black=" + board.pieces(ChessGame.TeamColor.BLACK)
+                + " kings=" + board.getKingSquare(ChessGame.TeamColor.WHITE)
+                + "," + board.getKingSquare(ChessGame.TeamColor.BLACK)
+                + " material=" + board.materialScore()
+                + " phase=" + board.getPhase();
+    }
+}
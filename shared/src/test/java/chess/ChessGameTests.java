@@ -0,0 +1,362 @@
+package chess;
+
+import chess.notation.Uci;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ChessGameTests {
+    @Test
+    @DisplayName("All Legal Moves By Square")
+    public void allLegalMovesBySquare() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        Map<ChessPosition, Collection<ChessMove>> moves = game.allLegalMoves();
+        Assertions.assertEquals(10, moves.size());
+        Assertions.assertEquals(20, moves.values().stream().mapToInt(Collection::size).sum());
+        Assertions.assertSame(moves, game.allLegalMoves());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> moves.remove(new ChessPosition(2, 5)));
+        Assertions.assertThrows(UnsupportedOperationException.class,
+                () -> moves.get(new ChessPosition(2, 5)).clear());
+
+        ChessPosition knight = new ChessPosition(1, 7);
+        Assertions.assertEquals(new HashSet<>(moves.get(knight)), new HashSet<>(game.validMoves(knight)));
+        Assertions.assertEquals(new HashSet<>(game.legalMoves()),
+                new HashSet<>(moves.values().stream().flatMap(Collection::stream).toList()));
+
+        game.makeMove(new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null));
+        Map<ChessPosition, Collection<ChessMove>> replies = game.allLegalMoves();
+        Assertions.assertNotSame(moves, replies);
+        Assertions.assertTrue(replies.containsKey(new ChessPosition(7, 5)));
+        Assertions.assertFalse(replies.containsKey(new ChessPosition(2, 4)));
+        Assertions.assertThrows(InvalidMoveException.class,
+                () -> game.makeMove(new ChessMove(new ChessPosition(7, 5), new ChessPosition(4, 5), null)));
+    }
+
+    @Test
+    @DisplayName("Legal Moves Follow Board Changes")
+    public void legalMovesFollowBoardChanges() throws InvalidMoveException {
+        ChessGame game = ChessGame.fromFen("4k3/8/8/8/8/8/8/4K2R w K - 0 1");
+        ChessPosition rook = new ChessPosition(1, 8);
+        Assertions.assertTrue(game.allLegalMoves().containsKey(rook));
+
+        // Edits through getBoard() are seen even though the game was not told
+        game.getBoard().removePiece(rook);
+        game.getBoard().setCastlingRights(0);
+        Assertions.assertFalse(game.allLegalMoves().containsKey(rook));
+        Assertions.assertThrows(InvalidMoveException.class,
+                () -> game.makeMove(new ChessMove(new ChessPosition(1, 5), new ChessPosition(1, 7), null)));
+
+        game.setBoard(ChessGame.fromFen("4k3/8/8/8/8/8/8/R3K3 w Q - 0 1").getBoard());
+        game.makeMove(new ChessMove(new ChessPosition(1, 5), new ChessPosition(1, 3), null));
+        Assertions.assertEquals(ChessPiece.PieceType.ROOK, game.getBoard().getPiece(new ChessPosition(1, 4)).getPieceType());
+
+        game.setTeamTurn(null);
+        Assertions.assertTrue(game.allLegalMoves().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Piece Moves Include Castling")
+    public void pieceMovesIncludeCastling() {
+        ChessGame game = ChessGame.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w Kq - 0 1");
+        ChessBoard board = game.getBoard();
+        Collection<ChessMove> white = board.getPiece(new ChessPosition(1, 5)).pieceMoves(board, new ChessPosition(1, 5));
+        Assertions.assertTrue(white.contains(new ChessMove(new ChessPosition(1, 5), new ChessPosition(1, 7), null)));
+        Assertions.assertFalse(white.contains(new ChessMove(new ChessPosition(1, 5), new ChessPosition(1, 3), null)));
+        Collection<ChessMove> black = board.getPiece(new ChessPosition(8, 5)).pieceMoves(board, new ChessPosition(8, 5));
+        Assertions.assertTrue(black.contains(new ChessMove(new ChessPosition(8, 5), new ChessPosition(8, 3), null)));
+        Assertions.assertFalse(black.contains(new ChessMove(new ChessPosition(8, 5), new ChessPosition(8, 7), null)));
+    }
+
+    @Test
+    @DisplayName("Move Lists Grow Past Capacity")
+    public void moveListsGrowPastCapacity() {
+        // Only boards set up with extra pieces get near this, but they must not overflow
+        MoveList moves = new MoveList();
+        for (int i = 0; i < MoveList.CAPACITY * 2 + 1; i++) {
+            moves.add(PackedMove.encode(i & 63, (i + 1) & 63, 0));
+        }
+        Assertions.assertEquals(MoveList.CAPACITY * 2 + 1, moves.size());
+        Assertions.assertEquals(PackedMove.encode(MoveList.CAPACITY & 63, (MoveList.CAPACITY + 1) & 63, 0),
+                moves.get(MoveList.CAPACITY));
+        moves.clear();
+        Assertions.assertTrue(moves.isEmpty());
+    }
+
+    @Test
+    @DisplayName("Status")
+    public void status() throws InvalidMoveException {
+        Assertions.assertEquals(ChessGame.Status.ONGOING, new ChessGame().status());
+        Assertions.assertEquals(ChessGame.Status.CHECK,
+                ChessGame.fromFen("rnbqkbnr/ppp2ppp/3p4/1B2p3/4P3/8/PPPP1PPP/RNBQK1NR b KQkq - 1 3").status());
+        Assertions.assertEquals(ChessGame.Status.CHECKMATE,
+                ChessGame.fromFen("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w KQkq - 1 3").status());
+        Assertions.assertEquals(ChessGame.Status.STALEMATE, ChessGame.fromFen("k7/2Q5/1K6/8/8/8/8/8 b - - 0 1").status());
+        // Mate on the hundredth halfmove still counts
+        Assertions.assertEquals(ChessGame.Status.CHECKMATE, ChessGame.fromFen("k7/1Q6/1K6/8/8/8/8/8 b - - 100 80").status());
+        Assertions.assertEquals(ChessGame.Status.DRAW_50, ChessGame.fromFen("k7/8/1K6/8/8/8/8/7R b - - 100 80").status());
+
+        Assertions.assertEquals(ChessGame.Status.DRAW_MATERIAL, ChessGame.fromFen("k7/8/1K6/8/8/8/8/8 w - - 0 1").status());
+        Assertions.assertEquals(ChessGame.Status.DRAW_MATERIAL, ChessGame.fromFen("k7/8/1K6/8/8/8/8/6N1 w - - 0 1").status());
+        Assertions.assertEquals(ChessGame.Status.DRAW_MATERIAL, ChessGame.fromFen("kb6/8/1K6/8/8/8/8/6B1 w - - 0 1").status());
+        Assertions.assertEquals(ChessGame.Status.ONGOING, ChessGame.fromFen("k1b5/8/1K6/8/8/8/8/6B1 w - - 0 1").status());
+        Assertions.assertEquals(ChessGame.Status.ONGOING, ChessGame.fromFen("k7/8/1K6/8/8/8/8/5NN1 w - - 0 1").status());
+
+        ChessGame game = new ChessGame();
+        String[] shuffle = {"g1f3", "g8f6", "f3g1", "f6g8", "g1f3", "g8f6", "f3g1", "f6g8"};
+        for (String move : shuffle) {
+            Assertions.assertFalse(game.status().isGameOver());
+            game.makeMove(Uci.parse(move));
+        }
+        Assertions.assertEquals(ChessGame.Status.DRAW_REPETITION, game.status());
+        Assertions.assertTrue(game.status().isGameOver());
+
+        game.setTeamTurn(null);
+        Assertions.assertNull(game.status());
+    }
+
+    @Test
+    @DisplayName("Threefold Repetition")
+    public void threefoldRepetition() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        String[] shuffle = {"g1f3", "g8f6", "f3g1", "f6g8"};
+        for (String move : shuffle) {
+            game.makeMove(Uci.parse(move));
+        }
+        // The start position has been seen twice, which is not yet a draw
+        Assertions.assertFalse(game.isThreefoldRepetition());
+        Assertions.assertEquals(4, game.getPositionHistory().length);
+        for (String move : shuffle) {
+            game.makeMove(Uci.parse(move));
+        }
+        Assertions.assertTrue(game.isThreefoldRepetition());
+        game.makeMove(Uci.parse("b1c3"));
+        Assertions.assertFalse(game.isThreefoldRepetition());
+    }
+
+    @Test
+    @DisplayName("Copies Keep Repetition History")
+    public void copiesKeepRepetitionHistory() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        String[] shuffle = {"g1f3", "g8f6", "f3g1", "f6g8", "g1f3", "g8f6", "f3g1"};
+        for (String move : shuffle) {
+            game.makeMove(Uci.parse(move));
+        }
+        // A copy, and the saved form the server writes, still count the earlier positions
+        Gson gson = new Gson();
+        for (ChessGame copy : new ChessGame[]{new ChessGame(game), gson.fromJson(gson.toJson(new ChessGame(game)), ChessGame.class)}) {
+            Assertions.assertEquals(game.toFen(), copy.toFen());
+            copy.makeMove(Uci.parse("f6g8"));
+            Assertions.assertTrue(copy.isThreefoldRepetition());
+        }
+        // Moves on a copy leave the original and its pieces alone
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, game.getTeamTurn());
+        ChessGame copy = new ChessGame(game);
+        copy.makeMove(Uci.parse("e7e5"));
+        Assertions.assertFalse(game.getBoard().getPiece(new ChessPosition(7, 5)).hasMoved());
+        Assertions.assertNotNull(game.getBoard().getPiece(new ChessPosition(7, 5)));
+    }
+
+    @Test
+    @DisplayName("Repetition History Resets")
+    public void repetitionHistoryResets() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        game.makeMove(Uci.parse("g1f3"));
+        game.makeMove(Uci.parse("g8f6"));
+        Assertions.assertEquals(2, game.getPositionHistory().length);
+        // Positions before a pawn move can never come back
+        game.makeMove(Uci.parse("e2e4"));
+        Assertions.assertEquals(0, game.getPositionHistory().length);
+
+        ChessGame capture = ChessGame.fromFen("4k3/8/8/3p4/8/8/8/3RK3 w - - 10 40");
+        capture.makeMove(Uci.parse("e1e2"));
+        capture.makeMove(Uci.parse("e8e7"));
+        Assertions.assertEquals(2, capture.getPositionHistory().length);
+        capture.makeMove(Uci.parse("d1d5"));
+        Assertions.assertEquals(0, capture.getPositionHistory().length);
+        Assertions.assertEquals(0, capture.getBoard().getHalfmoveClock());
+    }
+
+    @Test
+    @DisplayName("Fifty Move Boundary")
+    public void fiftyMoveBoundary() throws InvalidMoveException {
+        ChessGame game = ChessGame.fromFen("k7/8/1K6/8/8/8/8/7R w - - 99 80");
+        Assertions.assertFalse(game.isFiftyMoveDraw());
+        Assertions.assertEquals(ChessGame.Status.ONGOING, game.status());
+        game.makeMove(Uci.parse("h1h2"));
+        Assertions.assertEquals(100, game.getBoard().getHalfmoveClock());
+        Assertions.assertTrue(game.isFiftyMoveDraw());
+        Assertions.assertEquals(ChessGame.Status.DRAW_50, game.status());
+    }
+
+    @Test
+    @DisplayName("Position Keys")
+    public void positionKeys() throws InvalidMoveException {
+        // Same pieces, but only one position lets the e5 pawn take en passant
+        Assertions.assertNotEquals(ChessGame.fromFen("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 2").positionKey(),
+                ChessGame.fromFen("4k3/8/8/3pP3/8/8/8/4K3 w - - 0 2").positionKey());
+        // Same pieces, different castling rights
+        Assertions.assertNotEquals(ChessGame.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1").positionKey(),
+                ChessGame.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w Kkq - 0 1").positionKey());
+        // Same pieces, different side to move
+        Assertions.assertNotEquals(ChessGame.fromFen("4k3/8/8/8/8/8/8/4K3 w - - 0 1").positionKey(),
+                ChessGame.fromFen("4k3/8/8/8/8/8/8/4K3 b - - 0 1").positionKey());
+
+        // Move order does not matter, and the incremental key matches one computed from scratch
+        ChessGame first = new ChessGame();
+        ChessGame second = new ChessGame();
+        for (String move : new String[]{"g1f3", "g8f6", "b1c3"}) {
+            first.makeMove(Uci.parse(move));
+        }
+        for (String move : new String[]{"b1c3", "g8f6", "g1f3"}) {
+            second.makeMove(Uci.parse(move));
+        }
+        Assertions.assertEquals(first.positionKey(), second.positionKey());
+        Assertions.assertEquals(ChessGame.fromFen(first.toFen()).positionKey(), first.positionKey());
+    }
+
+    @Test
+    @DisplayName("Snapshots")
+    public void snapshots() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        PositionSnapshot start = game.snapshot();
+        Assertions.assertSame(start, game.snapshot());
+        Assertions.assertEquals(game.toFen(), start.toFen());
+        Assertions.assertEquals(game.positionKey(), start.positionKey());
+
+        game.makeMove(Uci.parse("e2e4"));
+        PositionSnapshot afterMove = game.snapshot();
+        Assertions.assertNotSame(start, afterMove);
+        Assertions.assertEquals(ChessPiece.PieceType.PAWN, start.getPiece(new ChessPosition(2, 5)).getPieceType());
+        Assertions.assertNull(afterMove.getPiece(new ChessPosition(2, 5)));
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, afterMove.getTeamTurn());
+        Assertions.assertEquals(game.toFen(), afterMove.toFen());
+
+        PositionSnapshot copy = afterMove.toGame().snapshot();
+        Assertions.assertEquals(afterMove, copy);
+        Assertions.assertEquals(afterMove.hashCode(), copy.hashCode());
+
+        game.setTeamTurn(null);
+        Assertions.assertNull(game.snapshot().getTeamTurn());
+        Assertions.assertNull(game.snapshot().toGame().getTeamTurn());
+    }
+
+    @Test
+    @DisplayName("Snapshots Keep Repetition History")
+    public void snapshotsKeepRepetitionHistory() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        String[] shuffle = {"g1f3", "g8f6", "f3g1", "f6g8", "g1f3", "g8f6", "f3g1"};
+        for (String move : shuffle) {
+            game.makeMove(Uci.parse(move));
+        }
+        PositionSnapshot snapshot = game.snapshot();
+        Assertions.assertArrayEquals(game.getPositionHistory(), snapshot.getPositionHistory());
+
+        // A game set up from the snapshot, or read back from its JSON, still counts the earlier positions
+        Gson gson = new Gson();
+        String json = gson.toJson(snapshot);
+        for (ChessGame copy : new ChessGame[]{snapshot.toGame(), gson.fromJson(json, ChessGame.class)}) {
+            Assertions.assertEquals(game, copy);
+            Assertions.assertEquals(game.positionKey(), copy.positionKey());
+            copy.makeMove(Uci.parse("f6g8"));
+            Assertions.assertEquals(ChessGame.Status.DRAW_REPETITION, copy.status());
+        }
+        // Written with the same fields as the game itself, apart from the game's internal helpers
+        JsonObject fromGame = gson.toJsonTree(game).getAsJsonObject();
+        JsonObject fromSnapshot = gson.toJsonTree(snapshot).getAsJsonObject();
+        fromGame.remove("endGameConditions");
+        Assertions.assertEquals(fromGame.keySet(), fromSnapshot.keySet());
+        Assertions.assertEquals(fromGame.getAsJsonObject("board").keySet(), fromSnapshot.getAsJsonObject("board").keySet());
+        Assertions.assertEquals(snapshot, gson.fromJson(json, PositionSnapshot.class));
+
+        // Boards FEN would refuse can still be published and copied
+        ChessBoard kingless = new ChessBoard();
+        kingless.addPiece(new ChessPosition(2, 1), new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        ChessGame edited = new ChessGame();
+        edited.setBoard(kingless);
+        Assertions.assertEquals(edited.getBoard(), edited.snapshot().toGame().getBoard());
+    }
+
+    @Test
+    @DisplayName("Snapshots Are Never Torn")
+    public void snapshotsAreNeverTorn() throws Exception {
+        ChessGame game = new ChessGame();
+        game.snapshot();
+        String[] shuffle = {"g1f3", "g8f6", "f3g1", "f6g8"};
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> torn = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get() && torn.get() == null) {
+                PositionSnapshot snapshot = game.snapshot();
+                if (ChessGame.fromFen(snapshot.toFen()).positionKey() != snapshot.positionKey()) {
+                    torn.set(snapshot.toFen());
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 20_000; i++) {
+            game.makeMove(Uci.parse(shuffle[i % shuffle.length]));
+        }
+        done.set(true);
+        reader.join();
+        Assertions.assertNull(torn.get());
+    }
+
+    @Test
+    @DisplayName("Board Saves Pieces And State Only")
+    public void boardSavesPiecesAndStateOnly() {
+        Gson gson = new Gson();
+        ChessGame game = ChessGame.fromFen("r3k2r/8/8/3pP3/8/8/8/R3K2R w Kq d6 7 30");
+        String json = gson.toJson(game);
+        for (String derived : new String[]{"pieceBitboards", "occupied", "kingSquares", "pieceKey", "midgameScore", "phase"}) {
+            Assertions.assertFalse(json.contains(derived), derived);
+        }
+
+        ChessGame copy = gson.fromJson(json, ChessGame.class);
+        Assertions.assertEquals(game.toFen(), copy.toFen());
+        Assertions.assertEquals(game.positionKey(), copy.positionKey());
+        Assertions.assertEquals(game.getBoard().materialScore(), copy.getBoard().materialScore());
+        Assertions.assertEquals(game.getBoard().getKingSquare(ChessGame.TeamColor.BLACK),
+                copy.getBoard().getKingSquare(ChessGame.TeamColor.BLACK));
+    }
+
+    @Test
+    @DisplayName("Board Reads Original Format")
+    public void boardReadsOriginalFormat() {
+        Gson gson = new Gson();
+        // The 8 by 8 piece array boards were saved as before bitboards, indexed [row - 1][column - 1]
+        JsonArray rows = new JsonArray();
+        for (int row = 0; row < 8; row++) {
+            JsonArray cols = new JsonArray();
+            for (int col = 0; col < 8; col++) {
+                cols.add(JsonNull.INSTANCE);
+            }
+            rows.add(cols);
+        }
+        rows.get(0).getAsJsonArray().set(4, gson.toJsonTree(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING)));
+        rows.get(0).getAsJsonArray().set(7, gson.toJsonTree(new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK)));
+        rows.get(7).getAsJsonArray().set(4, gson.toJsonTree(new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING)));
+        JsonObject saved = new JsonObject();
+        saved.add("board", rows);
+        saved.addProperty("hasEnPassantBeenSet", false);
+        saved.addProperty("whiteHasMovedPawn", false);
+        saved.addProperty("blackHasMovedPawn", false);
+
+        ChessBoard board = gson.fromJson(saved, ChessBoard.class);
+        Assertions.assertEquals(ChessPiece.PieceType.ROOK, board.getPiece(new ChessPosition(1, 8)).getPieceType());
+        Assertions.assertEquals(Bitboards.square(8, 5), board.getKingSquare(ChessGame.TeamColor.BLACK));
+        // Castling rights are worked out from the unmoved king and rook
+        Assertions.assertEquals(ChessBoard.WHITE_KINGSIDE, board.getCastlingRights());
+        Assertions.assertEquals(ChessGame.fromFen("4k3/8/8/8/8/8/8/4K2R w K - 0 1").positionKey(),
+                board.positionKey(ChessGame.TeamColor.WHITE));
+    }
+}
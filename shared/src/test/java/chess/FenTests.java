@@ -0,0 +1,78 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class FenTests {
+
+    @Test
+    @DisplayName("FEN Round Trip")
+    public void fenRoundTrip() {
+        String[] positions = {
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "r3k2r/8/8/8/8/8/8/R3K2R b Qk - 12 34",
+                "4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 2",
+                "4k3/8/8/8/4pP2/8/8/4K3 b - f3 0 7",
+                "8/8/8/8/8/8/8/K6k w - - 99 180",
+        };
+        for (String fen : positions) {
+            ChessGame game = ChessGame.fromFen(fen);
+            Assertions.assertEquals(fen, game.toFen());
+            Assertions.assertEquals(fen, ChessGame.fromFen(game.toFen()).toFen());
+        }
+
+        ChessGame game = ChessGame.fromFen("r3k2r/8/8/8/8/8/8/R3K2R b Qk - 12 34");
+        Assertions.assertEquals(ChessBoard.WHITE_QUEENSIDE | ChessBoard.BLACK_KINGSIDE, game.getBoard().getCastlingRights());
+        Assertions.assertEquals(ChessGame.TeamColor.BLACK, game.getTeamTurn());
+        Assertions.assertEquals(12, game.getBoard().getHalfmoveClock());
+        Assertions.assertEquals(34, game.getFullmoveNumber());
+        Assertions.assertEquals(new ChessPosition(6, 4),
+                ChessGame.fromFen("4k3/8/8/3pP3/8/8/8/4K3 w - d6 0 2").getBoard().getEnPassantPosition());
+    }
+
+    @Test
+    @DisplayName("FEN Optional Fields")
+    public void fenOptionalFields() {
+        ChessGame game = ChessGame.fromFen("4k3/8/8/8/8/8/8/4K3 w -  -");
+        Assertions.assertEquals(0, game.getBoard().getHalfmoveClock());
+        Assertions.assertEquals(1, game.getFullmoveNumber());
+        // An en passant square no pawn can capture onto is dropped, as makeMove would
+        Assertions.assertEquals("4k3/8/8/3p4/8/8/8/4K3 w - - 0 2",
+                ChessGame.fromFen("4k3/8/8/3p4/8/8/8/4K3 w - d6 0 2").toFen());
+    }
+
+    @Test
+    @DisplayName("FEN Rejections")
+    public void fenRejections() {
+        String[] invalid = {
+                // Rank lengths
+                "rnbqkbnr/ppppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/ppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+                // Side to move
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR wb KQkq - 0 1",
+                // Castling rights
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KX - 0 1",
+                // En passant square
+                "4k3/8/8/3pP3/8/8/8/4K3 w - d5 0 2",
+                "4k3/8/8/3pP3/8/8/8/4K3 w - i6 0 2",
+                "4k3/8/8/8/3Pp3/8/8/4K3 w - d3 0 2",
+                "4k3/8/8/3pP3/8/8/8/4K3 b - d6 0 2",
+                // Trailing text
+                "4k3/8/8/8/8/8/8/4K3 w - - 0 1 extra",
+                // Counters
+                "4k3/8/8/8/8/8/8/4K3 w - - 99999999999 1",
+                "4k3/8/8/8/8/8/8/4K3 w - - 0 12x",
+                // Kings
+                "8/8/8/8/8/8/8/4K3 w - - 0 1",
+                "4k3/8/8/8/8/8/8/8 w - - 0 1",
+                "4k3/8/8/8/8/8/8/3KK3 w - - 0 1",
+        };
+        for (String fen : invalid) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen(fen), fen);
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen(null));
+    }
+}
@@ -0,0 +1,96 @@
+package chess.book;
+
+import chess.ChessGame;
+import chess.InvalidMoveException;
+import chess.MoveList;
+import chess.notation.Pgn;
+import chess.notation.Uci;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BookTests {
+    private static final String PGN = """
+            [Event "Casual"]
+            [White "A"]
+            [Black "B"]
+            [Result "1-0"]
+
+            1. e4 e5 2. Nf3 {the usual} Nc6 (2... d6 3. d4) 3. Bb5 $1 a6 1-0
+
+            [Event "Casual"]
+            [Result "1/2-1/2"]
+
+            1.e4 c5 2. Nf3 d6 1/2-1/2
+
+            [Event "Casual"]
+            [Result "0-1"]
+
+            1. d4 Nf6 2. c4 e6 ; a comment to the end of the line
+            3. Nc3 Bb4 0-1
+
+            [Event "Broken"]
+            [Result "*"]
+
+            1. e4 e5 2. Ke3 *
+            """;
+
+    @Test
+    @DisplayName("Read PGN")
+    public void readPgn() throws IOException {
+        List<Pgn.Game> games = new ArrayList<>();
+        Pgn.read(new StringReader(PGN), games::add);
+
+        Assertions.assertEquals(4, games.size());
+        Assertions.assertEquals("A", games.get(0).tags().get("White"));
+        Assertions.assertEquals(List.of("e4", "e5", "Nf3", "Nc6", "Bb5", "a6"), games.get(0).moves());
+        Assertions.assertEquals("1-0", games.get(0).result());
+        Assertions.assertEquals(List.of("e4", "c5", "Nf3", "d6"), games.get(1).moves());
+        Assertions.assertEquals(6, games.get(2).moves().size());
+    }
+
+    @Test
+    @DisplayName("Build And Probe Book")
+    public void buildAndProbeBook() throws IOException, InvalidMoveException {
+        BookBuilder builder = new BookBuilder(8, 1);
+        builder.addPgn(new StringReader(PGN));
+        Assertions.assertEquals(4, builder.games());
+        Assertions.assertEquals(1, builder.rejected());
+
+        Path file = Files.createTempFile("book", ".bin");
+        try {
+            builder.write(file);
+            OpeningBook book = OpeningBook.open(file);
+
+            // 1. e4 won once, drew once and was played in the broken game: 2 + 1 + 1.
+            // 1. d4 only lost, so it is left out
+            ChessGame game = new ChessGame();
+            MoveList moves = new MoveList();
+            Assertions.assertEquals(4, book.lookup(game.positionKey(), moves));
+            Assertions.assertEquals(1, moves.size());
+            Assertions.assertEquals("e2e4", Uci.format(book.bestMove(game)));
+            Assertions.assertEquals("e2e4", Uci.format(book.pickMove(game, new Random(1))));
+
+            // After 1. e4 black has two book replies: 1... c5 from the draw, and 1... e5 from the
+            // unfinished game, its loss adding nothing
+            game.makeMove(Uci.parse("e2e4"));
+            moves.clear();
+            Assertions.assertEquals(2, book.lookup(game.positionKey(), moves));
+            Assertions.assertEquals(List.of("c7c5", "e7e5"),
+                    List.of(Uci.format(moves.get(0)), Uci.format(moves.get(1))).stream().sorted().toList());
+
+            game.makeMove(Uci.parse("h7h6"));
+            Assertions.assertNull(book.bestMove(game));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package chess.engine;
+
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.InvalidMoveException;
+import chess.MoveGenerator;
+import chess.MoveList;
+import chess.PackedMove;
+import chess.PieceSquareTables;
+import chess.notation.Uci;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+public class EngineTests {
+
+    @Test
+    @DisplayName("Finds Mate In One")
+    public void mateInOne() {
+        ChessGame game = ChessGame.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1");
+        SearchResult result = new Engine().search(game, SearchLimits.depth(4));
+
+        Assertions.assertEquals("a1a8", Uci.format(result.bestMove()));
+        Assertions.assertTrue(result.isMate());
+        Assertions.assertEquals(1, result.mateIn());
+    }
+
+    @Test
+    @DisplayName("Finds Mate In Two")
+    public void mateInTwo() {
+        // 1. Ra6 and whichever way black takes or moves, a pawn or the rook mates on b7 or a7
+        ChessGame game = ChessGame.fromFen("kbK5/pp6/1P6/8/8/8/8/R7 w - - 0 1");
+        SearchResult result = new Engine().search(game, SearchLimits.depth(6));
+
+        Assertions.assertEquals("a1a6", Uci.format(result.bestMove()));
+        Assertions.assertEquals(2, result.mateIn());
+    }
+
+    @Test
+    @DisplayName("Wins Hanging Queen")
+    public void winsHangingQueen() {
+        ChessGame game = ChessGame.fromFen("4k3/8/8/3q4/8/8/3R4/4K3 w - - 0 1");
+        SearchResult result = new Engine().search(game, SearchLimits.depth(3));
+
+        Assertions.assertEquals("d2d5", Uci.format(result.bestMove()));
+        Assertions.assertTrue(result.score() > 300);
+    }
+
+    @Test
+    @DisplayName("Quiescence Does Not Stand Pat In Check")
+    public void quiescenceSearchesEvasions() {
+        // Qxb2 wins the queen at once, but 2... Rxd1 is mate on the back rank
+        ChessGame game = ChessGame.fromFen("3r2k1/3r1ppp/8/4Q3/8/8/1q3PPP/3R2K1 w - - 0 1");
+        SearchResult result = new Engine().search(game, SearchLimits.depth(1));
+
+        Assertions.assertNotEquals("e5b2", Uci.format(result.bestMove()));
+        Assertions.assertTrue(result.score() > -Engine.MATE / 2);
+    }
+
+    @Test
+    @DisplayName("Reports No Move When Mated")
+    public void noMoveWhenMated() {
+        ChessGame game = ChessGame.fromFen("R5k1/5ppp/8/8/8/8/8/6K1 b - - 1 1");
+        SearchResult result = new Engine().search(game, SearchLimits.depth(3));
+
+        Assertions.assertNull(result.bestMove());
+        Assertions.assertEquals(-Engine.MATE, result.score());
+    }
+
+    @Test
+    @DisplayName("Stops At Node Limit")
+    public void stopsAtNodeLimit() {
+        ChessGame game = ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        String before = game.toFen();
+        SearchResult result = new Engine().search(game, SearchLimits.nodes(5_000));
+
+        Assertions.assertEquals(5_000, result.nodes());
+        Assertions.assertNotNull(result.bestMove());
+        Assertions.assertEquals(before, game.toFen(), "Search must not change the game");
+    }
+
+    @Test
+    @DisplayName("Stops At Time Limit")
+    public void stopsAtTimeLimit() {
+        ChessGame game = new ChessGame();
+        SearchResult result = new Engine().search(game, SearchLimits.time(Duration.ofMillis(100)));
+
+        Assertions.assertNotNull(result.bestMove());
+        Assertions.assertTrue(result.millis() < 1_000, "Took " + result.millis() + "ms");
+        Assertions.assertTrue(result.depth() >= 1);
+    }
+
+    @Test
+    @DisplayName("Transposition Table Round Trip")
+    public void tableRoundTrip() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key = 0x9E3779B97F4A7C15L;
+        int move = PackedMove.encode(12, 28, PackedMove.DOUBLE_PUSH);
+        table.store(key, move, TranspositionTable.toStored(Engine.MATE - 7, 3), 9, TranspositionTable.LOWER);
+
+        long entry = table.probe(key);
+        Assertions.assertEquals(move, TranspositionTable.move(entry));
+        Assertions.assertEquals(9, TranspositionTable.depth(entry));
+        Assertions.assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        // The same mate seen from two plies further down is two plies closer
+        Assertions.assertEquals(Engine.MATE - 5, TranspositionTable.fromStored(TranspositionTable.score(entry), 1));
+        Assertions.assertEquals(0L, table.probe(key ^ 1L << 40));
+    }
+
+    @Test
+    @DisplayName("Transposition Table Keeps Deeper Entry")
+    public void tableKeepsDeeperEntry() {
+        TranspositionTable table = new TranspositionTable(1);
+        long deep = 0x1234_5678_0000_0040L;
+        long shallow = 0x8765_4321_0000_0040L;
+        table.store(deep, PackedMove.NONE, 50, 12, TranspositionTable.EXACT);
+        table.store(shallow, PackedMove.NONE, -20, 2, TranspositionTable.UPPER);
+
+        Assertions.assertEquals(12, TranspositionTable.depth(table.probe(deep)));
+        Assertions.assertEquals(-20, TranspositionTable.score(table.probe(shallow)));
+
+        // A new search may take over the deep slot
+        table.newSearch();
+        table.store(shallow, PackedMove.NONE, -30, 1, TranspositionTable.UPPER);
+        Assertions.assertEquals(0L, table.probe(deep));
+        Assertions.assertEquals(-30, TranspositionTable.score(table.probe(shallow)));
+    }
+
+    @Test
+    @DisplayName("Parallel Search Finds Mate")
+    public void parallelSearchFindsMate() {
+        ChessGame game = ChessGame.fromFen("kbK5/pp6/1P6/8/8/8/8/R7 w - - 0 1");
+        try (ParallelSearch search = new ParallelSearch(3, 1)) {
+            SearchResult result = search.search(game, SearchLimits.depth(6));
+
+            Assertions.assertEquals("a1a6", Uci.format(result.bestMove()));
+            Assertions.assertEquals(2, result.mateIn());
+        }
+    }
+
+    @Test
+    @DisplayName("Parallel Search Stops Helpers")
+    public void parallelSearchStopsHelpers() {
+        try (ParallelSearch search = new ParallelSearch(4, 1)) {
+            SearchResult result = search.search(new ChessGame(), SearchLimits.nodes(20_000));
+
+            Assertions.assertNotNull(result.bestMove());
+            Assertions.assertTrue(result.nodes() <= 20_000, "Searched " + result.nodes() + " nodes");
+        }
+    }
+
+    @Test
+    @DisplayName("Vote Favors Deeper Agreement")
+    public void voteFavorsDeeperAgreement() {
+        SearchResult e4 = result("e2e4", 30, 8);
+        SearchResult d4 = result("d2d4", 40, 5);
+        SearchResult e4Again = result("e2e4", 20, 7);
+
+        Assertions.assertSame(e4, ParallelSearch.vote(new SearchResult[]{d4, e4, e4Again}));
+        // An even vote goes to the lower numbered thread
+        SearchResult c4 = result("c2c4", 30, 8);
+        Assertions.assertSame(c4, ParallelSearch.vote(new SearchResult[]{c4, e4}));
+    }
+
+    private static SearchResult result(String move, int score, int depth) {
+        return new SearchResult(Uci.parse(move), score, depth, 0, 0, List.of(Uci.parse(move)));
+    }
+
+    @Test
+    @DisplayName("Incremental Evaluation Matches Rebuild")
+    public void incrementalEvaluationMatchesRebuild() throws InvalidMoveException {
+        Assertions.assertEquals(0, new ChessGame().getBoard().materialScore());
+
+        // Play a line with captures, castling, en passant and a promotion, checking the
+        // running totals against a board set up from scratch after every move
+        ChessGame game = ChessGame.fromFen("r3k2r/pPppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/P1PBBPPP/R3K2R w KQkq - 0 1");
+        for (String move : new String[]{"a2a4", "b4a3", "b7a8q", "e7d8", "e1c1", "e8g8", "d5e6"}) {
+            game.makeMove(Uci.parse(move));
+            ChessBoard rebuilt = ChessGame.fromFen(game.toFen()).getBoard();
+            Assertions.assertEquals(rebuilt.materialScore(), game.getBoard().materialScore(), "after " + move);
+            Assertions.assertEquals(rebuilt.getPhase(), game.getBoard().getPhase(), "after " + move);
+        }
+
+        // Make and unmake put the totals back exactly
+        ChessBoard board = game.getBoard();
+        int before = board.materialScore();
+        MoveList moves = new MoveList();
+        MoveGenerator.generateLegalMoves(board, game.getTeamTurn(), moves);
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            board.unmakeMove(moves.get(i));
+        }
+        Assertions.assertEquals(before, board.materialScore());
+    }
+
+    @Test
+    @DisplayName("Evaluation Tapers Toward Endgame")
+    public void evaluationTapers() {
+        ChessBoard opening = new ChessGame().getBoard();
+        ChessBoard kingAndPawn = ChessGame.fromFen("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1").getBoard();
+
+        Assertions.assertEquals(PieceSquareTables.MAX_PHASE, opening.getPhase());
+        Assertions.assertEquals(0, kingAndPawn.getPhase());
+        // Only the pawn is left, so the score is its endgame value with the kings' placement cancelling out
+        Assertions.assertEquals(PieceSquareTables.endgame(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN, 12),
+                Evaluation.evaluate(kingAndPawn, ChessGame.TeamColor.WHITE)
+                        - PieceSquareTables.endgame(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING, 4)
+                        - PieceSquareTables.endgame(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING, 60));
+    }
+}
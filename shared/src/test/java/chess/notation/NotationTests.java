@@ -0,0 +1,92 @@
+package chess.notation;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPiece;
+import chess.ChessPosition;
+import chess.InvalidMoveException;
+import chess.MoveList;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import websocket.commands.MakeMoveCommand;
+
+public class NotationTests {
+
+    @Test
+    @DisplayName("UCI Round Trip")
+    public void uciRoundTrip() {
+        ChessMove push = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+        ChessMove promotion = new ChessMove(new ChessPosition(7, 1), new ChessPosition(8, 2), ChessPiece.PieceType.KNIGHT);
+
+        Assertions.assertEquals("e2e4", Uci.format(push));
+        Assertions.assertEquals("a7b8n", Uci.format(promotion));
+        Assertions.assertEquals(push, Uci.parse("e2e4"));
+        Assertions.assertEquals(promotion, Uci.parse("a7b8n"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Uci.parse("e2e9"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Uci.parse("e7e8k"));
+    }
+
+    @Test
+    @DisplayName("SAN Formatting")
+    public void sanFormatting() {
+        ChessGame castling = ChessGame.fromFen("4k3/8/8/8/8/8/8/R3K2R w KQ - 0 1");
+        Assertions.assertEquals("O-O", San.format(castling, move("e1g1")));
+        Assertions.assertEquals("O-O-O", San.format(castling, move("e1c1")));
+
+        // Both rooks reach d1, and the knight on f3 is pinned so Nb5-d4 needs no disambiguation
+        ChessGame game = ChessGame.fromFen("4k3/1P6/8/1N1b4/8/5N2/6K1/R6R w - - 0 1");
+        Assertions.assertEquals("Rad1", San.format(game, move("a1d1")));
+        Assertions.assertEquals("Rhd1", San.format(game, move("h1d1")));
+        Assertions.assertEquals("Nd4", San.format(game, move("b5d4")));
+        Assertions.assertEquals("b8=Q+", San.format(game, move("b7b8q")));
+        Assertions.assertEquals("Ra8#", San.format(ChessGame.fromFen("4k3/8/4K3/8/8/8/8/R7 w - - 0 1"), move("a1a8")));
+
+        // The caller's list and text are reused, and the board is left exactly as it was
+        String fen = game.toFen();
+        long key = game.positionKey();
+        MoveList moves = new MoveList();
+        StringBuilder sb = new StringBuilder();
+        for (String uci : new String[]{"a1d1", "h1d1", "b7b8q"}) {
+            San.format(game, move(uci), moves, sb);
+            sb.append(' ');
+        }
+        Assertions.assertEquals("Rad1 Rhd1 b8=Q+ ", sb.toString());
+        Assertions.assertEquals(fen, game.toFen());
+        Assertions.assertEquals(key, game.positionKey());
+        Assertions.assertEquals(move("b5d4"), San.parse(game, "Nd4", moves));
+    }
+
+    @Test
+    @DisplayName("SAN Parsing")
+    public void sanParsing() throws InvalidMoveException {
+        ChessGame game = new ChessGame();
+        for (String san : new String[]{"e4", "d5", "exd5", "Qxd5", "Nc3", "Qa5", "d4", "Nf6", "Nf3", "Bf5", "Bc4", "e6", "O-O"}) {
+            ChessMove move = San.parse(game, san);
+            Assertions.assertEquals(san, San.format(game, move), "Formatting the parsed move");
+            game.makeMove(move);
+        }
+        Assertions.assertEquals("rn2kb1r/ppp2ppp/4pn2/q4b2/2BP4/2N2N2/PPP2PPP/R1BQ1RK1 b kq - 1 7", game.toFen());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> San.parse(game, "Ke2"));
+    }
+
+    @Test
+    @DisplayName("Make Move Command Accepts Compact Moves")
+    public void compactMakeMoveCommand() {
+        Gson gson = new Gson();
+        ChessMove move = new ChessMove(new ChessPosition(2, 5), new ChessPosition(4, 5), null);
+
+        String json = gson.toJson(new MakeMoveCommand("token", 1, move));
+        Assertions.assertTrue(json.contains("\"move\":\"e2e4\""), json);
+
+        String objectForm = "{\"move\":{\"startPosition\":{\"row\":2,\"col\":5},\"endPosition\":{\"row\":4,\"col\":5}},"
+                + "\"commandType\":\"MAKE_MOVE\",\"authToken\":\"token\",\"gameID\":1}";
+        Assertions.assertEquals(move, gson.fromJson(json, MakeMoveCommand.class).getMove());
+        Assertions.assertEquals(move, gson.fromJson(objectForm, MakeMoveCommand.class).getMove());
+    }
+
+    private static ChessMove move(String uci) {
+        return Uci.parse(uci);
+    }
+}
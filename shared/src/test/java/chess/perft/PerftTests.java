@@ -0,0 +1,76 @@
+package chess.perft;
+
+import chess.ChessGame;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks move generation against the known perft counts of the reference
+ * positions. Each position is searched as deep as stays under a few million
+ * nodes so the suite runs in seconds.
+ */
+public class PerftTests {
+    private static final long NODE_BUDGET = 5_000_000;
+
+    static List<PerftPosition> referencePositions() {
+        return PerftPosition.REFERENCE;
+    }
+
+    @ParameterizedTest
+    @MethodSource("referencePositions")
+    @DisplayName("Reference Position Node Counts")
+    public void referenceCounts(PerftPosition position) {
+        ChessGame game = position.game();
+        Perft perft = new Perft();
+        for (int depth = 1; depth <= position.maxDepth() && position.expected(depth) <= NODE_BUDGET; depth++) {
+            Assertions.assertEquals(position.expected(depth), perft.count(game, depth),
+                    position.name() + " at depth " + depth);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("referencePositions")
+    @DisplayName("Counting Leaves the Position Unchanged")
+    public void countRestoresPosition(PerftPosition position) {
+        ChessGame game = position.game();
+        long key = game.positionKey();
+        ChessGame untouched = position.game();
+
+        new Perft().count(game, 3);
+
+        Assertions.assertEquals(key, game.positionKey(), "Position key changed after perft");
+        Assertions.assertEquals(untouched.getBoard(), game.getBoard(), "Board changed after perft");
+    }
+
+    @Test
+    @DisplayName("Divide Sums to Count")
+    public void divideSumsToCount() {
+        PerftPosition kiwipete = PerftPosition.named("kiwipete");
+        Map<String, Long> split = new Perft().divide(kiwipete.game(), 3);
+
+        Assertions.assertEquals(48, split.size(), "Wrong number of root moves");
+        Assertions.assertEquals(kiwipete.expected(3), split.values().stream().mapToLong(Long::longValue).sum());
+        Assertions.assertTrue(split.containsKey("e1g1"), "Castling missing from divide");
+        Assertions.assertTrue(Perft.diff(split, split).isEmpty(), "Identical results should not differ");
+    }
+
+    @Test
+    @DisplayName("Diff Reports Differing Moves")
+    public void diffReportsDifferences() {
+        Map<String, Long> expected = Map.of("e2e4", 20L, "d2d4", 20L, "g1f3", 20L);
+        Map<String, Long> actual = Map.of("e2e4", 20L, "d2d4", 19L, "a7a8q", 1L);
+
+        List<String> lines = Perft.diff(expected, actual);
+
+        Assertions.assertEquals(List.of(
+                "a7a8q: not legal (counted 1)",
+                "d2d4: expected 20, got 19 (-1)",
+                "g1f3: missing (expected 20)"), lines);
+    }
+}
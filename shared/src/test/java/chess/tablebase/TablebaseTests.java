@@ -0,0 +1,185 @@
+package chess.tablebase;
+
+import chess.Bitboards;
+import chess.ChessBoard;
+import chess.ChessGame;
+import chess.ChessPiece;
+import chess.MoveGenerator;
+import chess.MoveList;
+import chess.notation.Uci;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+public class TablebaseTests {
+    private static final Map<Endgame, byte[]> TABLES = new EnumMap<>(Endgame.class);
+    private static TablebaseGenerator generator;
+
+    // Generating takes a few seconds, so every test shares one set of tables
+    private static synchronized TablebaseGenerator generator() {
+        if (generator == null) {
+            generator = new TablebaseGenerator();
+            for (Endgame endgame : new Endgame[]{Endgame.KQK, Endgame.KRK, Endgame.KPK}) {
+                TABLES.put(endgame, generator.generate(endgame));
+            }
+        }
+        return generator;
+    }
+
+    @Test
+    @DisplayName("Longest Mates")
+    public void longestMates() {
+        generator();
+        // Mate in 10, 16 and 28 moves from black to move, as in published tables
+        Assertions.assertEquals(20, longestMate(TABLES.get(Endgame.KQK)));
+        Assertions.assertEquals(32, longestMate(TABLES.get(Endgame.KRK)));
+        Assertions.assertEquals(56, longestMate(TABLES.get(Endgame.KPK)));
+    }
+
+    @Test
+    @DisplayName("Probe Known Positions")
+    public void probeKnownPositions() {
+        Tablebase tablebase = generator().tablebase();
+
+        Assertions.assertEquals(-Tablebase.MATE, tablebase.probe(ChessGame.fromFen("Q6k/8/6K1/8/8/8/8/8 b - - 0 1")));
+        ChessGame mateInOne = ChessGame.fromFen("7k/8/6K1/8/8/8/8/1Q6 w - - 0 1");
+        Assertions.assertEquals(Tablebase.MATE - 1, tablebase.probe(mateInOne));
+        Assertions.assertEquals("b1b8", Uci.format(tablebase.bestMove(mateInOne)));
+
+        // King in front of its pawn on the sixth rank wins with either side to move
+        Assertions.assertTrue(tablebase.probe(ChessGame.fromFen("4k3/8/4K3/4P3/8/8/8/8 b - - 0 1")) < 0);
+        Assertions.assertTrue(tablebase.probe(ChessGame.fromFen("4k3/8/4K3/4P3/8/8/8/8 w - - 0 1")) > 0);
+        // A rook pawn cannot drive the defending king out of the corner
+        Assertions.assertEquals(0, tablebase.probe(ChessGame.fromFen("k7/8/8/8/8/1K6/P7/8 w - - 0 1")));
+        // Black can take the undefended queen
+        Assertions.assertEquals(0, tablebase.probe(ChessGame.fromFen("8/8/8/8/8/8/1Qk5/7K b - - 0 1")));
+
+        Assertions.assertEquals(0, tablebase.probe(ChessGame.fromFen("8/8/3k4/8/8/3KN3/8/8 w - - 0 1")));
+        Assertions.assertEquals(Tablebase.NOT_FOUND, tablebase.probe(ChessGame.fromFen("8/8/3k4/8/8/3KNB2/8/8 w - - 0 1")));
+        Assertions.assertEquals(Tablebase.NOT_FOUND, tablebase.probe(new ChessGame()));
+    }
+
+    @Test
+    @DisplayName("Colors Are Symmetric")
+    public void colorsAreSymmetric() {
+        Tablebase tablebase = generator().tablebase();
+        String[][] pairs = {
+                {"4k3/8/4K3/4P3/8/8/8/8 b - - 0 1", "8/8/8/8/4p3/4k3/8/4K3 w - - 0 1"},
+                {"8/8/2k5/8/8/8/5R2/6K1 w - - 0 1", "6k1/5r2/8/8/8/2K5/8/8 b - - 0 1"},
+        };
+        for (String[] pair : pairs) {
+            int white = tablebase.probe(ChessGame.fromFen(pair[0]));
+            Assertions.assertNotEquals(Tablebase.NOT_FOUND, white);
+            Assertions.assertEquals(white, tablebase.probe(ChessGame.fromFen(pair[1])));
+        }
+    }
+
+    @Test
+    @DisplayName("Values Agree With Children")
+    public void valuesAgreeWithChildren() {
+        Tablebase tablebase = generator().tablebase();
+        MoveList moves = new MoveList();
+        int[] squares = new int[3];
+        int checked = 0;
+        for (Endgame endgame : new Endgame[]{Endgame.KRK, Endgame.KPK}) {
+            ChessPiece[] pieces = {
+                    new ChessPiece(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING),
+                    new ChessPiece(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.KING),
+                    new ChessPiece(ChessGame.TeamColor.WHITE, endgame.piece(0)),
+            };
+            for (int index = 0; index < endgame.size(); index += 101) {
+                boolean whiteToMove = endgame.decode(index, squares);
+                if (squares[0] == squares[1] || squares[0] == squares[2] || squares[1] == squares[2]) {
+                    continue;
+                }
+                ChessBoard board = new ChessBoard();
+                for (int i = 0; i < squares.length; i++) {
+                    board.addPiece(Bitboards.position(squares[i]), pieces[i]);
+                }
+                board.setCastlingRights(0);
+                ChessGame.TeamColor side = whiteToMove ? ChessGame.TeamColor.WHITE : ChessGame.TeamColor.BLACK;
+                int value = tablebase.probe(board, side);
+                if (value == Tablebase.NOT_FOUND) {
+                    continue;
+                }
+                Assertions.assertEquals(expected(tablebase, board, side, moves), value, "index " + index);
+                checked++;
+            }
+        }
+        Assertions.assertTrue(checked > 1000);
+    }
+
+    @Test
+    @DisplayName("Same Tables On Any Number Of Threads")
+    public void sameTablesOnAnyNumberOfThreads() {
+        generator();
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool parallel = new ForkJoinPool(4);
+        try {
+            for (Endgame endgame : new Endgame[]{Endgame.KQK, Endgame.KRK}) {
+                byte[] serial = new TablebaseGenerator(single).generate(endgame);
+                Assertions.assertArrayEquals(serial, new TablebaseGenerator(parallel).generate(endgame), endgame.name());
+                Assertions.assertArrayEquals(serial, TABLES.get(endgame), endgame.name());
+            }
+        } finally {
+            single.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Write And Map Tables")
+    public void writeAndMapTables() throws IOException {
+        Tablebase generated = generator().tablebase();
+        byte[] table = TABLES.get(Endgame.KQK);
+        Path directory = Files.createTempDirectory("tablebase");
+        try {
+            TablebaseGenerator.write(Endgame.KQK, table, directory);
+            Tablebase tablebase = Tablebase.open(directory);
+            Assertions.assertTrue(tablebase.covers(Endgame.KQK));
+            Assertions.assertFalse(tablebase.covers(Endgame.KRK));
+            ChessGame game = ChessGame.fromFen("8/8/8/3k4/8/8/8/KQ6 w - - 0 1");
+            Assertions.assertEquals(generated.probe(game), tablebase.probe(game));
+            Assertions.assertEquals(Tablebase.NOT_FOUND, tablebase.probe(ChessGame.fromFen("8/8/8/3k4/8/8/8/KR6 w - - 0 1")));
+        } finally {
+            Files.deleteIfExists(directory.resolve(Endgame.KQK.fileName()));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static int longestMate(byte[] table) {
+        int longest = 0;
+        for (byte value : table) {
+            if (value != Tablebase.ILLEGAL) {
+                longest = Math.max(longest, (value & 0xFF) - 1);
+            }
+        }
+        return longest;
+    }
+
+    // The value of a position worked out one ply deep from the values of its children
+    private static int expected(Tablebase tablebase, ChessBoard board, ChessGame.TeamColor side, MoveList moves) {
+        ChessGame.TeamColor opponent = (side == ChessGame.TeamColor.WHITE) ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        moves.clear();
+        MoveGenerator.generateLegalMoves(board, side, moves);
+        if (moves.isEmpty()) {
+            return board.isInCheck(side) ? -Tablebase.MATE : 0;
+        }
+        int best = Integer.MIN_VALUE;
+        for (int i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            int child = tablebase.probe(board, opponent);
+            board.unmakeMove(moves.get(i));
+            int value = (child == 0) ? 0 : (child > 0) ? -child + 1 : -child - 1;
+            best = Math.max(best, value);
+        }
+        return best;
+    }
+}